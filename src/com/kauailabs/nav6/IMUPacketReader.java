@@ -0,0 +1,288 @@
+/* ============================================
+ Nav6 source code is placed under the MIT license
+ Copyright (c) 2013 Kauai Labs
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===============================================
+ */
+package com.kauailabs.nav6;
+
+/**
+ * Splits a stream of bytes from the nav6 into IMUProtocol packets.
+ *
+ * Bytes are added with put() (or written straight into getBuffer() and
+ * committed) as they arrive, in chunks of any size.  process() then hands
+ * every complete packet with a valid checksum to a PacketHandler.  A packet
+ * which has only partly arrived is kept in the buffer and finished on a
+ * later call, so packets split across two serial reads are not lost.
+ *
+ * The reader works out each packet's length from its message id, so it
+ * never has to guess where a packet ends.  Bytes which are not part of a
+ * packet, and packets with a bad checksum, are skipped and counted.
+ *
+ * Nothing is allocated after construction.  Apart from the counters, the
+ * reader is not thread safe; it is meant to be used by the thread that
+ * reads the serial port.
+ */
+public class IMUPacketReader {
+
+    public final static int DEFAULT_CAPACITY = 512;
+
+    /**
+     * Receives the packets found by an IMUPacketReader.
+     */
+    public interface PacketHandler {
+
+        /**
+         * Called with each complete packet whose checksum is valid.  The
+         * packet's bytes are only valid until this method returns.
+         *
+         * @param buffer The buffer holding the packet
+         * @param offset The index of the packet's start character
+         * @param length The length of the packet, including the terminator
+         * @return true if the packet was decoded, false if it was not wanted
+         */
+        boolean handlePacket(byte[] buffer, int offset, int length);
+    }
+
+    private final byte[] buffer;
+    /* bytes from read_index up to write_index have not been processed yet */
+    private int read_index;
+    private int write_index;
+
+    /* written only by the reading thread, but may be read from any thread */
+    private volatile long packet_count;
+    private volatile long bytes_discarded;
+    private volatile long checksum_failures;
+
+    /**
+     * Constructs a reader with the default buffer size.
+     */
+    public IMUPacketReader() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a reader.
+     *
+     * @param capacity Size of the receive buffer, in bytes.  This must be
+     * larger than the longest packet.
+     */
+    public IMUPacketReader(int capacity) {
+        if (capacity <= IMUProtocol.IMU_PROTOCOL_MAX_MESSAGE_LENGTH) {
+            throw new IllegalArgumentException("capacity must be more than "
+                    + IMUProtocol.IMU_PROTOCOL_MAX_MESSAGE_LENGTH);
+        }
+        buffer = new byte[capacity];
+    }
+
+    /**
+     * Discards everything in the buffer, including any partial packet.  The
+     * counters are not reset.
+     */
+    public void clear() {
+        read_index = 0;
+        write_index = 0;
+    }
+
+    /**
+     * Returns the buffer that received bytes can be written into directly,
+     * starting at getWriteOffset().  Call commit() afterwards.
+     * @return The receive buffer.
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the index in getBuffer() where the next received byte goes.
+     * @return The write offset.
+     */
+    public int getWriteOffset() {
+        makeRoom();
+        return write_index;
+    }
+
+    /**
+     * Returns how many bytes can be written into getBuffer() starting at
+     * getWriteOffset().
+     * @return The free space in the buffer, in bytes.
+     */
+    public int getWritableLength() {
+        makeRoom();
+        return buffer.length - write_index;
+    }
+
+    /**
+     * Marks bytes written directly into getBuffer() as received.
+     * @param count The number of bytes written at getWriteOffset().
+     */
+    public void commit(int count) {
+        if (count < 0 || count > buffer.length - write_index) {
+            throw new IllegalArgumentException("Bad commit count " + count);
+        }
+        write_index += count;
+    }
+
+    /**
+     * Copies received bytes into the buffer.  If there is not enough room,
+     * only as many bytes as fit are taken; call process() and then put() the
+     * rest.
+     *
+     * @param data The received bytes
+     * @param offset Index of the first byte in data
+     * @param length Number of bytes to add
+     * @return The number of bytes taken.
+     */
+    public int put(byte[] data, int offset, int length) {
+        int count = Math.min(length, getWritableLength());
+        System.arraycopy(data, offset, buffer, write_index, count);
+        write_index += count;
+        return count;
+    }
+
+    /**
+     * Moves unprocessed bytes to the start of the buffer so that there is as
+     * much room as possible after them.  Only a partial packet is ever left
+     * over after process(), so this copies at most a few dozen bytes.
+     */
+    private void makeRoom() {
+        if (read_index == 0) {
+            return;
+        }
+        int remaining = write_index - read_index;
+        if (remaining > 0) {
+            System.arraycopy(buffer, read_index, buffer, 0, remaining);
+        }
+        read_index = 0;
+        write_index = remaining;
+    }
+
+    /**
+     * Works out the total length of the packet starting at offset from its
+     * header.  Subclasses can override this to frame other kinds of
+     * packets.
+     *
+     * @param buffer The buffer holding the packet
+     * @param offset The index of the packet's start character
+     * @param available The number of bytes received from offset on
+     * @return The length of the packet, 0 if more bytes are needed to tell,
+     * or -1 if the bytes at offset are not the start of a packet.
+     */
+    protected int getPacketLength(byte[] buffer, int offset, int available) {
+        if (available < 2) {
+            return 0;
+        }
+        int packet_length = IMUProtocol.getPacketLength(buffer[offset + 1]);
+        return (packet_length > 0) ? packet_length : -1;
+    }
+
+    /**
+     * Passes every complete packet in the buffer to handler.  Anything left
+     * over at the end is the start of a packet which has not fully arrived
+     * yet, and is kept for the next call.
+     *
+     * @param handler Receives the packets
+     * @return The number of packets handler accepted.
+     */
+    public int process(PacketHandler handler) {
+        int packets = 0;
+        while (read_index < write_index) {
+            // look for the start of a packet
+            if (buffer[read_index] != IMUProtocol.PACKET_START_CHAR) {
+                read_index++;
+                bytes_discarded++;
+                continue;
+            }
+            int available = write_index - read_index;
+            int packet_length = getPacketLength(buffer, read_index, available);
+            if (packet_length == 0) {
+                break;
+            }
+            if (packet_length < 0 || packet_length > buffer.length) {
+                // not a packet header, so that wasn't really a start character
+                read_index++;
+                bytes_discarded++;
+                continue;
+            }
+            if (available < packet_length) {
+                break;
+            }
+            int content_length = packet_length - IMUProtocol.CHECKSUM_LENGTH
+                    - IMUProtocol.TERMINATOR_LENGTH;
+            if (!IMUProtocol.verifyChecksum(buffer, read_index, content_length)) {
+                // the start character may have been noise inside a real
+                // packet, so resume the search right after it
+                checksum_failures++;
+                read_index++;
+                bytes_discarded++;
+                continue;
+            }
+            if (handler.handlePacket(buffer, read_index, packet_length)) {
+                packets++;
+                packet_count++;
+            } else {
+                bytes_discarded += packet_length;
+            }
+            read_index += packet_length;
+        }
+        if (read_index == write_index) {
+            read_index = 0;
+            write_index = 0;
+        }
+        return packets;
+    }
+
+    /**
+     * Returns the number of bytes currently waiting in the buffer, i.e. the
+     * part of a packet that has been received so far.
+     * @return The number of unprocessed bytes.
+     */
+    public int getPendingByteCount() {
+        return write_index - read_index;
+    }
+
+    /**
+     * Returns the number of packets which have been accepted by a handler.
+     * @return The number of packets received.
+     */
+    public long getPacketCount() {
+        return packet_count;
+    }
+
+    /**
+     * Returns the number of received bytes which were thrown away because
+     * they were not part of a valid packet, or were part of a packet no
+     * handler wanted.  A steadily increasing count points to noise on the
+     * serial line or a mismatched baud rate.
+     * @return The number of bytes discarded.
+     */
+    public long getBytesDiscarded() {
+        return bytes_discarded;
+    }
+
+    /**
+     * Returns the number of packets which were thrown away because their
+     * checksum did not match.
+     * @return The number of checksum failures.
+     */
+    public long getChecksumFailures() {
+        return checksum_failures;
+    }
+}
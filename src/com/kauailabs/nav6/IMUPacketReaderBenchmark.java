@@ -0,0 +1,152 @@
+/* ============================================
+ Nav6 source code is placed under the MIT license
+ Copyright (c) 2013 Kauai Labs
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===============================================
+ */
+package com.kauailabs.nav6;
+
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+
+import com.milkenknights.common.Benchmark;
+import com.milkenknights.common.LatencyHistogram;
+
+/**
+ * Measures how the IMU thread turns serial bytes into updates.
+ *
+ * The first measurement frames and decodes a stream of yaw/pitch/roll
+ * packets, fed to an IMUPacketReader in 64 byte reads the way the serial
+ * port delivers them.  It fails if this allocates anything.
+ *
+ * The second measures the latency from a packet being written to a
+ * StreamTransport until it has been decoded on the reading thread, using
+ * the same blocking read loop as IMU.run().  Packets are sent every 2 ms,
+ * and the median, 99th percentile and worst latency are printed.  The IMU
+ * class itself needs the WPILib runtime, so it is not used here.
+ *
+ * See com.milkenknights.common.Benchmark for how to run this.
+ */
+public class IMUPacketReaderBenchmark {
+
+    final static int PACKETS = 64;
+    final static int READ_LENGTH = 64;
+    final static int LATENCY_SAMPLES = 2000;
+    final static long LATENCY_PERIOD_NANOS = 2000000;
+
+    static void encodeYPRUpdate(byte[] packet, float yaw, float pitch, float roll,
+            float compass_heading) {
+        packet[0] = IMUProtocol.PACKET_START_CHAR;
+        packet[1] = IMUProtocol.MSGID_YPR_UPDATE;
+        IMUProtocol.encodeProtocolFloat(yaw, packet, IMUProtocol.YPR_UPDATE_YAW_VALUE_INDEX);
+        IMUProtocol.encodeProtocolFloat(pitch, packet, IMUProtocol.YPR_UPDATE_PITCH_VALUE_INDEX);
+        IMUProtocol.encodeProtocolFloat(roll, packet, IMUProtocol.YPR_UPDATE_ROLL_VALUE_INDEX);
+        IMUProtocol.encodeProtocolFloat(compass_heading, packet,
+                IMUProtocol.YPR_UPDATE_COMPASS_VALUE_INDEX);
+        IMUProtocol.encodeTermination(packet, IMUProtocol.YPR_UPDATE_MESSAGE_LENGTH,
+                IMUProtocol.YPR_UPDATE_CHECKSUM_INDEX);
+    }
+
+    static void measureThroughput() {
+        final byte[] stream = new byte[PACKETS * IMUProtocol.YPR_UPDATE_MESSAGE_LENGTH];
+        byte[] packet = new byte[IMUProtocol.YPR_UPDATE_MESSAGE_LENGTH];
+        for (int i = 0; i < PACKETS; i++) {
+            encodeYPRUpdate(packet, i * 5.55f - 180, -12.34f + i, 3.21f, i * 5.5f);
+            System.arraycopy(packet, 0, stream, i * packet.length, packet.length);
+        }
+        final IMUPacketReader reader = new IMUPacketReader();
+        final IMUProtocol.YPRUpdate update = new IMUProtocol.YPRUpdate();
+        final IMUPacketReader.PacketHandler handler = (buffer, offset, length) ->
+                IMUProtocol.decodeYPRUpdate(buffer, offset, length, update) > 0;
+
+        Benchmark.Result result = Benchmark.run("IMUPacketReader, 64 YPR packets", 20000, () -> {
+            for (int i = 0; i < stream.length; i += READ_LENGTH) {
+                int count = Math.min(READ_LENGTH, stream.length - i);
+                System.arraycopy(stream, i, reader.getBuffer(), reader.getWriteOffset(), count);
+                reader.commit(count);
+                reader.process(handler);
+            }
+        });
+        Benchmark.checkNoAllocation(result, "IMUPacketReader");
+        Benchmark.check(reader.getPacketCount() > 0 && reader.getChecksumFailures() == 0,
+                "the packets were not decoded");
+    }
+
+    static void measureLatency() throws IOException, InterruptedException {
+        PipedInputStream input = new PipedInputStream(4096);
+        final PipedOutputStream output = new PipedOutputStream(input);
+        final StreamTransport transport = new StreamTransport(input, null);
+        final long[] sent_nanos = new long[LATENCY_SAMPLES];
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        Thread reading_thread = new Thread(() -> {
+            IMUPacketReader reader = new IMUPacketReader();
+            IMUProtocol.YPRUpdate update = new IMUProtocol.YPRUpdate();
+            int[] received = new int[1];
+            IMUPacketReader.PacketHandler handler = (buffer, offset, length) -> {
+                if (IMUProtocol.decodeYPRUpdate(buffer, offset, length, update) == 0) {
+                    return false;
+                }
+                latency.record(System.nanoTime() - sent_nanos[received[0]++]);
+                return true;
+            };
+            while (true) {
+                int bytes_read = transport.read(reader.getBuffer(),
+                        reader.getWriteOffset(), reader.getWritableLength());
+                if (bytes_read < 0) {
+                    break;
+                }
+                reader.commit(bytes_read);
+                reader.process(handler);
+            }
+        }, "IMU");
+        reading_thread.start();
+
+        byte[] packet = new byte[IMUProtocol.YPR_UPDATE_MESSAGE_LENGTH];
+        long next = System.nanoTime();
+        for (int i = 0; i < LATENCY_SAMPLES; i++) {
+            encodeYPRUpdate(packet, (i % 360) - 180, 0, 0, 0);
+            while (System.nanoTime() < next) {
+                Thread.sleep(0, 100000);
+            }
+            next += LATENCY_PERIOD_NANOS;
+            sent_nanos[i] = System.nanoTime();
+            output.write(packet);
+            // wakes the reading thread
+            output.flush();
+        }
+        output.close();
+        reading_thread.join();
+
+        Benchmark.print(String.format("StreamTransport to decoded update: p50 %.3f ms, "
+                + "p99 %.3f ms, max %.3f ms",
+                latency.getPercentile(50) / 1e6, latency.getPercentile(99) / 1e6,
+                latency.getMax() / 1e6));
+        Benchmark.check(latency.getCount() == LATENCY_SAMPLES,
+                "only " + latency.getCount() + " of " + LATENCY_SAMPLES + " updates arrived");
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        measureThroughput();
+        measureLatency();
+        Benchmark.finish();
+    }
+}
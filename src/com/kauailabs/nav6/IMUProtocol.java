@@ -122,6 +122,7 @@ public class IMUProtocol {
     static public class StreamCommand {
 
         public byte stream_type;
+        public byte update_rate_hz;
     }
 
     static public class StreamResponse {
@@ -167,6 +168,23 @@ public class IMUProtocol {
         public float temp_c;
     }
 
+    // Returns the total length of packets with the given message id, or 0 if
+    // msgid is not the id of a packet the nav6 sends
+    public static int getPacketLength(byte msgid) {
+        switch (msgid) {
+            case MSGID_YPR_UPDATE:
+                return YPR_UPDATE_MESSAGE_LENGTH;
+            case MSGID_QUATERNION_UPDATE:
+                return QUATERNION_UPDATE_MESSAGE_LENGTH;
+            case MSGID_GYRO_UPDATE:
+                return GYRO_UPDATE_MESSAGE_LENGTH;
+            case MSG_ID_STREAM_RESPONSE:
+                return STREAM_RESPONSE_MESSAGE_LENGTH;
+            default:
+                return 0;
+        }
+    }
+
     public static int encodeStreamCommand(byte[] protocol_buffer, byte stream_type, byte update_rate_hz) {
         // Header
         protocol_buffer[0] = PACKET_START_CHAR;
@@ -188,7 +206,7 @@ public class IMUProtocol {
             return 0;
         }
         if ((buffer[offset+0] == PACKET_START_CHAR) && (buffer[offset+1] == MSG_ID_STREAM_RESPONSE)) {
-            if (!verifyChecksum(buffer, offset+STREAM_RESPONSE_CHECKSUM_INDEX)) {
+            if (!verifyChecksum(buffer, offset, STREAM_RESPONSE_CHECKSUM_INDEX)) {
                 return 0;
             }
 
@@ -208,16 +226,40 @@ public class IMUProtocol {
         return 0;
     }
 
+    public static int encodeStreamResponse(byte[] protocol_buffer, StreamResponse r) {
+        // Header
+        protocol_buffer[0] = PACKET_START_CHAR;
+        protocol_buffer[1] = MSG_ID_STREAM_RESPONSE;
+
+        // Data
+        protocol_buffer[STREAM_RESPONSE_STREAM_TYPE_INDEX] = r.stream_type;
+        encodeProtocolUint16(r.gyro_fsr_dps, protocol_buffer, STREAM_RESPONSE_GYRO_FULL_SCALE_DPS_RANGE);
+        encodeProtocolUint16(r.accel_fsr_g, protocol_buffer, STREAM_RESPONSE_ACCEL_FULL_SCALE_G_RANGE);
+        encodeProtocolUint16(r.update_rate_hz, protocol_buffer, STREAM_RESPONSE_UPDATE_RATE_HZ);
+        encodeProtocolFloat(r.yaw_offset_degrees, protocol_buffer, STREAM_RESPONSE_YAW_OFFSET_DEGREES);
+        encodeProtocolUint16(r.q1_offset, protocol_buffer, STREAM_RESPONSE_QUAT1_OFFSET);
+        encodeProtocolUint16(r.q2_offset, protocol_buffer, STREAM_RESPONSE_QUAT2_OFFSET);
+        encodeProtocolUint16(r.q3_offset, protocol_buffer, STREAM_RESPONSE_QUAT3_OFFSET);
+        encodeProtocolUint16(r.q4_offset, protocol_buffer, STREAM_RESPONSE_QUAT4_OFFSET);
+        encodeProtocolUint16(r.flags, protocol_buffer, STREAM_RESPONSE_FLAGS);
+
+        // Footer
+        encodeTermination(protocol_buffer, STREAM_RESPONSE_MESSAGE_LENGTH, STREAM_RESPONSE_MESSAGE_LENGTH - 4);
+
+        return STREAM_RESPONSE_MESSAGE_LENGTH;
+    }
+
     public static int decodeStreamCommand(byte[] buffer, int offset, int length, StreamCommand c) {
         if (length < STREAM_CMD_MESSAGE_LENGTH) {
             return 0;
         }
         if ((buffer[offset+0] == '!') && (buffer[offset+1] == MSGID_STREAM_CMD)) {
-            if (!verifyChecksum(buffer, offset+STREAM_CMD_CHECKSUM_INDEX)) {
+            if (!verifyChecksum(buffer, offset, STREAM_CMD_CHECKSUM_INDEX)) {
                 return 0;
             }
 
             c.stream_type = buffer[offset+STREAM_CMD_STREAM_TYPE_INDEX];
+            c.update_rate_hz = decodeUint8(buffer, offset+STREAM_CMD_UPDATE_RATE_HZ_INDEX);
             return STREAM_CMD_MESSAGE_LENGTH;
         }
         return 0;
@@ -228,7 +270,7 @@ public class IMUProtocol {
             return 0;
         }
         if ((buffer[offset+0] == '!') && (buffer[offset+1] == 'y')) {
-            if (!verifyChecksum(buffer, offset+YPR_UPDATE_CHECKSUM_INDEX)) {
+            if (!verifyChecksum(buffer, offset, YPR_UPDATE_CHECKSUM_INDEX)) {
                 return 0;
             }
 
@@ -247,7 +289,7 @@ public class IMUProtocol {
             return 0;
         }
         if ((buffer[offset+0] == PACKET_START_CHAR) && (buffer[offset+1] == MSGID_QUATERNION_UPDATE)) {
-            if (!verifyChecksum(buffer, offset+QUATERNION_UPDATE_CHECKSUM_INDEX)) {
+            if (!verifyChecksum(buffer, offset, QUATERNION_UPDATE_CHECKSUM_INDEX)) {
                 return 0;
             }
 
@@ -273,7 +315,7 @@ public class IMUProtocol {
             return 0;
         }
         if ((buffer[offset+0] == PACKET_START_CHAR) && (buffer[offset+1] == MSGID_GYRO_UPDATE)) {
-            if (!verifyChecksum(buffer, offset+GYRO_UPDATE_CHECKSUM_INDEX)) {
+            if (!verifyChecksum(buffer, offset, GYRO_UPDATE_CHECKSUM_INDEX)) {
                 return 0;
             }
 
@@ -320,38 +362,117 @@ public class IMUProtocol {
         dest[offset + 1] = hexArray[v & 0x0F];
     }
 
-    public static short decodeProtocolUint16(byte[] uint16_string, int offset) {
-        short decoded_uint16 = 0;
-        int shift_left = 12;
-        for (int i = offset + 0; i < offset + 4; i++) {
-            byte digit = (byte) (uint16_string[i] <= '9' ? uint16_string[i] - '0' : ((uint16_string[i] - 'A') + 10));
-            decoded_uint16 += (((short) digit) << shift_left);
-            shift_left -= 4;
+    // Value of each byte as a hex digit, indexed by (byte & 0xFF).  Bytes
+    // which aren't hex digits get the same (meaningless) values the
+    // original arithmetic conversion gave them, so corrupt fields decode
+    // exactly as before.
+    private final static byte[] hexDigitValues = new byte[256];
+    
+    static {
+        for (int i = 0; i < 256; i++) {
+            byte c = (byte) i;
+            hexDigitValues[i] = (byte) (c <= '9' ? c - '0' : ((c - 'A') + 10));
         }
-        return decoded_uint16;
+    }
+
+    public static void encodeProtocolUint16(short value, byte[] uint16_string, int offset) {
+        uint16_string[offset + 0] = hexArray[(value >> 12) & 0x0F];
+        uint16_string[offset + 1] = hexArray[(value >> 8) & 0x0F];
+        uint16_string[offset + 2] = hexArray[(value >> 4) & 0x0F];
+        uint16_string[offset + 3] = hexArray[value & 0x0F];
+    }
+
+    public static short decodeProtocolUint16(byte[] uint16_string, int offset) {
+        return (short) ((hexDigitValues[uint16_string[offset] & 0xFF] << 12)
+                + (hexDigitValues[uint16_string[offset + 1] & 0xFF] << 8)
+                + (hexDigitValues[uint16_string[offset + 2] & 0xFF] << 4)
+                + hexDigitValues[uint16_string[offset + 3] & 0xFF]);
     }
 
     public static boolean verifyChecksum(byte[] buffer, int content_length) {
+        return verifyChecksum(buffer, 0, content_length);
+    }
+
+    // Verifies the checksum of a packet starting at offset; content_length
+    // is the length of the packet up to (not including) the checksum
+    public static boolean verifyChecksum(byte[] buffer, int offset, int content_length) {
         // Calculate Checksum
         byte checksum = 0;
-        for (int i = 0; i < content_length; i++) {
+        for (int i = offset; i < offset + content_length; i++) {
             checksum += buffer[i];
         }
 
         // Decode Checksum
-        byte decoded_checksum = decodeUint8(buffer, content_length);
+        byte decoded_checksum = decodeUint8(buffer, offset + content_length);
 
         return (checksum == decoded_checksum);
     }
 
     public static byte decodeUint8(byte[] checksum, int offset) {
-        byte first_digit = (byte) (checksum[0 + offset] <= '9' ? checksum[0 + offset] - '0' : ((checksum[0 + offset] - 'A') + 10));
-        byte second_digit = (byte) (checksum[1 + offset] <= '9' ? checksum[1 + offset] - '0' : ((checksum[1 + offset] - 'A') + 10));
+        byte first_digit = hexDigitValues[checksum[0 + offset] & 0xFF];
+        byte second_digit = hexDigitValues[checksum[1 + offset] & 0xFF];
         byte decoded_checksum = (byte) ((first_digit * 16) + second_digit);
         return decoded_checksum;
     }
 
+    private final static float[] powersOfTen
+            = new float[]{1f, 10f, 100f, 1000f, 10000f, 100000f, 1000000f};
+
+    // Decodes a fixed width ASCII float such as "+012.34" without
+    // allocating.  The digits are collected into an integer and divided
+    // by a power of ten, which gives exactly the float Float.parseFloat()
+    // would, since both are exactly representable.  Anything unusual
+    // (spaces, exponents, garbage) falls back to Float.parseFloat().
     public static float decodeProtocolFloat(byte[] buffer, int offset) {
+        int i = offset;
+        int end = offset + PROTOCOL_FLOAT_LENGTH;
+        boolean negative = false;
+        if (buffer[i] == '-') {
+            negative = true;
+            i++;
+        } else if (buffer[i] == '+') {
+            i++;
+        }
+        int mantissa = 0;
+        int digits = 0;
+        int decimal_places = -1;
+        for (; i < end; i++) {
+            int c = buffer[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (decimal_places >= 0) {
+                    decimal_places++;
+                }
+            } else if (c == '.' && decimal_places < 0) {
+                decimal_places = 0;
+            } else {
+                return parseProtocolFloat(buffer, offset);
+            }
+        }
+        if (digits == 0) {
+            return parseProtocolFloat(buffer, offset);
+        }
+        float value = (decimal_places > 0) ? mantissa / powersOfTen[decimal_places] : mantissa;
+        return negative ? -value : value;
+    }
+
+    // Encodes a float in the fixed width ASCII format, e.g. "-012.34".
+    // Values outside -999.99 to +999.99 are clamped.
+    public static void encodeProtocolFloat(float value, byte[] buffer, int offset) {
+        buffer[offset] = (byte) (value < 0 ? '-' : '+');
+        int hundredths = Math.min(Math.round(Math.abs(value) * 100), 99999);
+        for (int i = PROTOCOL_FLOAT_LENGTH - 1; i > 0; i--) {
+            if (i == PROTOCOL_FLOAT_LENGTH - 3) {
+                buffer[offset + i] = '.';
+            } else {
+                buffer[offset + i] = (byte) ('0' + hundredths % 10);
+                hundredths /= 10;
+            }
+        }
+    }
+
+    private static float parseProtocolFloat(byte[] buffer, int offset) {
         String float_string = new String(buffer, offset, PROTOCOL_FLOAT_LENGTH);
         return Float.parseFloat(float_string);
     }
@@ -0,0 +1,169 @@
+/* ============================================
+ Nav6 source code is placed under the MIT license
+ Copyright (c) 2013 Kauai Labs
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===============================================
+ */
+package com.kauailabs.nav6;
+
+import java.util.Arrays;
+
+import com.milkenknights.common.Benchmark;
+
+/**
+ * Checks and times IMUProtocol's ASCII field decoders against the way they
+ * used to work, which is kept here as a reference.
+ *
+ * The checks fail (exit status 1) if:
+ * - decodeProtocolFloat() gives a different float from Float.parseFloat()
+ *   for any "+DDD.DD" or "-DDD.DD" value;
+ * - decodeUint8() gives a different result from the old arithmetic for any
+ *   pair of bytes, valid hex digits or not;
+ * - decodeProtocolUint16() does, for any two of its four bytes set to any
+ *   values with the others set to '0'.
+ *
+ * See com.milkenknights.common.Benchmark for how to run this.
+ */
+public class IMUProtocolBenchmark {
+
+    static float referenceDecodeProtocolFloat(byte[] buffer, int offset) {
+        String float_string = new String(buffer, offset, IMUProtocol.PROTOCOL_FLOAT_LENGTH);
+        return Float.parseFloat(float_string);
+    }
+
+    static byte referenceHexDigit(byte c) {
+        return (byte) (c <= '9' ? c - '0' : ((c - 'A') + 10));
+    }
+
+    static byte referenceDecodeUint8(byte[] checksum, int offset) {
+        byte first_digit = referenceHexDigit(checksum[offset]);
+        byte second_digit = referenceHexDigit(checksum[offset + 1]);
+        return (byte) ((first_digit * 16) + second_digit);
+    }
+
+    static short referenceDecodeProtocolUint16(byte[] uint16_string, int offset) {
+        short decoded_uint16 = 0;
+        int shift_left = 12;
+        for (int i = offset; i < offset + 4; i++) {
+            byte digit = referenceHexDigit(uint16_string[i]);
+            decoded_uint16 += (((short) digit) << shift_left);
+            shift_left -= 4;
+        }
+        return decoded_uint16;
+    }
+
+    static void checkFloats() {
+        byte[] field = new byte[IMUProtocol.PROTOCOL_FLOAT_LENGTH];
+        int mismatches = 0;
+        for (int hundredths = -99999; hundredths <= 99999; hundredths++) {
+            // written out digit by digit, so that every field is covered
+            // whatever encodeProtocolFloat() would round to
+            field[0] = (byte) (hundredths < 0 ? '-' : '+');
+            int digits = Math.abs(hundredths);
+            for (int i = field.length - 1; i > 0; i--) {
+                if (i == field.length - 3) {
+                    field[i] = '.';
+                } else {
+                    field[i] = (byte) ('0' + digits % 10);
+                    digits /= 10;
+                }
+            }
+            float expected = referenceDecodeProtocolFloat(field, 0);
+            float actual = IMUProtocol.decodeProtocolFloat(field, 0);
+            if (Float.floatToRawIntBits(expected) != Float.floatToRawIntBits(actual)) {
+                mismatches++;
+            }
+        }
+        Benchmark.check(mismatches == 0, mismatches
+                + " +/-DDD.DD values decoded differently from Float.parseFloat()");
+    }
+
+    static void checkHex() {
+        byte[] field = new byte[4];
+        int mismatches = 0;
+        for (int a = 0; a < 256; a++) {
+            for (int b = 0; b < 256; b++) {
+                field[0] = (byte) a;
+                field[1] = (byte) b;
+                if (IMUProtocol.decodeUint8(field, 0) != referenceDecodeUint8(field, 0)) {
+                    mismatches++;
+                }
+            }
+        }
+        Benchmark.check(mismatches == 0, mismatches
+                + " byte pairs decoded differently by decodeUint8()");
+
+        mismatches = 0;
+        for (int p = 0; p < 4; p++) {
+            for (int q = p + 1; q < 4; q++) {
+                for (int a = 0; a < 256; a++) {
+                    for (int b = 0; b < 256; b++) {
+                        Arrays.fill(field, (byte) '0');
+                        field[p] = (byte) a;
+                        field[q] = (byte) b;
+                        if (IMUProtocol.decodeProtocolUint16(field, 0)
+                                != referenceDecodeProtocolUint16(field, 0)) {
+                            mismatches++;
+                        }
+                    }
+                }
+            }
+        }
+        Benchmark.check(mismatches == 0, mismatches
+                + " fields decoded differently by decodeProtocolUint16()");
+    }
+
+    public static void main(String[] args) {
+        checkFloats();
+        checkHex();
+
+        final byte[] floats = new byte[IMUProtocol.PROTOCOL_FLOAT_LENGTH * 4];
+        IMUProtocol.encodeProtocolFloat(-123.45f, floats, 0);
+        IMUProtocol.encodeProtocolFloat(7.5f, floats, IMUProtocol.PROTOCOL_FLOAT_LENGTH);
+        IMUProtocol.encodeProtocolFloat(-0.01f, floats, IMUProtocol.PROTOCOL_FLOAT_LENGTH * 2);
+        IMUProtocol.encodeProtocolFloat(359.99f, floats, IMUProtocol.PROTOCOL_FLOAT_LENGTH * 3);
+        final float[] sink = new float[1];
+
+        Benchmark.Result table = Benchmark.run("decodeProtocolFloat(), 4 fields", 1000000, () -> {
+            for (int i = 0; i < floats.length; i += IMUProtocol.PROTOCOL_FLOAT_LENGTH) {
+                sink[0] += IMUProtocol.decodeProtocolFloat(floats, i);
+            }
+        });
+        Benchmark.checkNoAllocation(table, "decodeProtocolFloat()");
+        Benchmark.run("Float.parseFloat() reference, 4 fields", 1000000, () -> {
+            for (int i = 0; i < floats.length; i += IMUProtocol.PROTOCOL_FLOAT_LENGTH) {
+                sink[0] += referenceDecodeProtocolFloat(floats, i);
+            }
+        });
+
+        final byte[] hex = "09AF7C3E".getBytes();
+        final short[] hex_sink = new short[1];
+        Benchmark.run("decodeProtocolUint16(), 2 fields", 1000000, () -> {
+            hex_sink[0] += IMUProtocol.decodeProtocolUint16(hex, 0);
+            hex_sink[0] += IMUProtocol.decodeProtocolUint16(hex, 4);
+        });
+        Benchmark.run("arithmetic reference, 2 fields", 1000000, () -> {
+            hex_sink[0] += referenceDecodeProtocolUint16(hex, 0);
+            hex_sink[0] += referenceDecodeProtocolUint16(hex, 4);
+        });
+
+        Benchmark.finish();
+    }
+}
@@ -0,0 +1,64 @@
+/* ============================================
+ Nav6 source code is placed under the MIT license
+ Copyright (c) 2013 Kauai Labs
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===============================================
+ */
+package com.kauailabs.nav6;
+
+/**
+ * A connection to a nav6 IMU.  The IMU classes read the IMU's packets from,
+ * and send commands to, a transport rather than a particular kind of port,
+ * so the same code can run against a serial port or a recorded or simulated
+ * stream of bytes.
+ *
+ * A transport is used by one reading thread, plus the thread which
+ * constructs the IMU (which sends the first stream command).
+ */
+public interface IMUTransport {
+
+    /**
+     * Reads received bytes into buffer, blocking until at least one byte has
+     * arrived or the transport's timeout expires.  Transports should return
+     * as soon as a packet terminator has been received, rather than waiting
+     * to fill the buffer, so each packet is delivered as soon as possible.
+     *
+     * @param buffer Where to put the received bytes
+     * @param offset Index in buffer of the first byte to fill
+     * @param length The most bytes to read
+     * @return The number of bytes read, 0 if none arrived before the
+     * timeout, or -1 if the transport is closed and no more bytes will
+     * ever arrive.
+     */
+    int read(byte[] buffer, int offset, int length);
+
+    /**
+     * Sends bytes to the IMU.
+     *
+     * @param buffer The bytes to send
+     * @param length The number of bytes from the start of buffer to send
+     */
+    void write(byte[] buffer, int length);
+
+    /**
+     * Throws away any received bytes which have not been read yet.
+     */
+    void reset();
+}
@@ -0,0 +1,180 @@
+/* ============================================
+ Nav6 source code is placed under the MIT license
+ Copyright (c) 2013 Kauai Labs
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===============================================
+ */
+package com.kauailabs.nav6;
+
+/**
+ * Decides whether the IMU is moving from a stream of acceleration
+ * magnitudes, e.g. the sum of the absolute x and y-axis world linear
+ * acceleration.
+ *
+ * The detector keeps a running sum over a window of the most recent
+ * samples, so adding a sample and reading the average both take constant
+ * time.  It starts reporting motion when the average reaches the motion
+ * threshold, and only reports stationary again once the average drops
+ * below the (lower) stationary threshold, so noise around a single
+ * threshold doesn't make the state flicker.  It also tracks how long the
+ * IMU has been stationary.
+ *
+ * Nothing is allocated after construction.  A detector is not thread
+ * safe; it is meant to be owned by the thread which decodes the IMU's
+ * packets, and its results copied out from there.
+ */
+public class MotionDetector {
+
+    public final static int DEFAULT_WINDOW_LENGTH = 10;
+    public final static float DEFAULT_MOTION_THRESHOLD = 0.01f; /* g */
+    public final static float DEFAULT_STATIONARY_THRESHOLD = 0.008f; /* g */
+
+    private final float[] window;
+    private final float motion_threshold;
+    private final float stationary_threshold;
+
+    private int next_index;
+    private double sum;
+    private float average;
+    private boolean moving;
+    private boolean started;
+    private double stationary_since;
+    private double last_timestamp;
+    private int stationary_count;
+
+    /**
+     * Constructs a detector with the default window and thresholds.
+     */
+    public MotionDetector() {
+        this(DEFAULT_WINDOW_LENGTH, DEFAULT_MOTION_THRESHOLD, DEFAULT_STATIONARY_THRESHOLD);
+    }
+
+    /**
+     * Constructs a detector.
+     * @param window_length Number of samples to average over
+     * @param motion_threshold Average (in g) at or above which the IMU is
+     * considered to be moving
+     * @param stationary_threshold Average (in g) below which a moving IMU is
+     * considered to have stopped.  This must not be more than
+     * motion_threshold.
+     */
+    public MotionDetector(int window_length, float motion_threshold, float stationary_threshold) {
+        if (window_length < 1) {
+            throw new IllegalArgumentException("window_length must be at least 1");
+        }
+        if (stationary_threshold > motion_threshold) {
+            throw new IllegalArgumentException("stationary_threshold must not be more than motion_threshold");
+        }
+        this.window = new float[window_length];
+        this.motion_threshold = motion_threshold;
+        this.stationary_threshold = stationary_threshold;
+    }
+
+    /**
+     * Forgets all samples.  The IMU is then considered stationary, starting
+     * from the next sample.
+     */
+    public void reset() {
+        for (int i = 0; i < window.length; i++) {
+            window[i] = 0;
+        }
+        next_index = 0;
+        sum = 0;
+        average = 0;
+        moving = false;
+        started = false;
+        stationary_count = 0;
+    }
+
+    /**
+     * Adds a sample.
+     * @param magnitude Acceleration magnitude (in g)
+     * @param timestamp Time (in seconds) at which the sample was taken
+     */
+    public void add(float magnitude, double timestamp) {
+        sum += magnitude - window[next_index];
+        window[next_index] = magnitude;
+        next_index++;
+        if (next_index >= window.length) {
+            next_index = 0;
+            // start the sum over once per window so that rounding errors
+            // from the adds and subtracts can't build up
+            sum = 0;
+            for (int i = 0; i < window.length; i++) {
+                sum += window[i];
+            }
+        }
+        // samples before the window fills count as zero, as they always have
+        average = (float) (sum / window.length);
+
+        if (!started) {
+            started = true;
+            stationary_since = timestamp;
+        }
+        if (moving) {
+            if (average < stationary_threshold) {
+                moving = false;
+                stationary_since = timestamp;
+                stationary_count = 0;
+            }
+        } else if (average >= motion_threshold) {
+            moving = true;
+        }
+        if (!moving) {
+            stationary_count++;
+        }
+        last_timestamp = timestamp;
+    }
+
+    /**
+     * Returns the average of the samples in the window.
+     * @return The recent average magnitude (in g).
+     */
+    public float getAverage() {
+        return average;
+    }
+
+    /**
+     * Indicates whether the IMU is moving, with hysteresis.
+     * @return true if the IMU is currently moving.
+     */
+    public boolean isMoving() {
+        return moving;
+    }
+
+    /**
+     * Returns how long the IMU has been stationary, as of the latest
+     * sample.
+     * @return The time (in seconds) since the IMU stopped moving, or 0 if it
+     * is moving.
+     */
+    public double getStationaryTime() {
+        return (moving || !started) ? 0 : last_timestamp - stationary_since;
+    }
+
+    /**
+     * Returns how many samples in a row, including the latest one, have
+     * been stationary.
+     * @return The number of consecutive stationary samples.
+     */
+    public int getStationarySampleCount() {
+        return stationary_count;
+    }
+}
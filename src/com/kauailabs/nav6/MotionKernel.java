@@ -0,0 +1,164 @@
+/* ============================================
+ Nav6 source code is placed under the MIT license
+ Copyright (c) 2013 Kauai Labs
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===============================================
+ */
+package com.kauailabs.nav6;
+
+/**
+ * The quaternion and vector math used to turn a nav6 quaternion update
+ * into yaw/pitch/roll, world-frame linear acceleration and a
+ * tilt-compensated compass heading.
+ *
+ * All inputs, intermediate values and results are kept in primitive
+ * fields, so a kernel can be reused for every update without allocating.
+ * A kernel is not thread safe; it is meant to be owned by the thread
+ * which decodes the IMU's packets, and its results copied out from there.
+ *
+ * Call setQuaternion() first, then removeGravity() and/or
+ * setTiltCompensatedHeading() as needed.
+ */
+public class MotionKernel {
+
+    /* +1.0 in the DMP's quaternion fixed point format */
+    final static float QUATERNION_SCALE = 16384.0f;
+
+    /* orientation quaternion */
+    public float q_w;
+    public float q_x;
+    public float q_y;
+    public float q_z;
+
+    /* direction of gravity in the sensor frame, in g */
+    public float gravity_x;
+    public float gravity_y;
+    public float gravity_z;
+
+    /* in radians */
+    public float yaw;
+    public float pitch;
+    public float roll;
+
+    /* acceleration with gravity removed, in the sensor frame, in g */
+    public float linear_accel_x;
+    public float linear_accel_y;
+    public float linear_accel_z;
+
+    /* linear acceleration rotated into the world frame, in g */
+    public float world_linear_accel_x;
+    public float world_linear_accel_y;
+    public float world_linear_accel_z;
+
+    /* in degrees, from 0 to 360 */
+    public float compass_heading;
+
+    /**
+     * Sets the orientation from the four raw quaternion values sent by the
+     * nav6, and works out the gravity vector and yaw, pitch and roll.
+     */
+    public void setQuaternion(short q1, short q2, short q3, short q4) {
+        q_w = toQuaternionComponent(q1);
+        q_x = toQuaternionComponent(q2);
+        q_y = toQuaternionComponent(q3);
+        q_z = toQuaternionComponent(q4);
+
+        // calculate gravity vector
+        gravity_x = 2 * (q_x*q_z - q_w*q_y);
+        gravity_y = 2 * (q_w*q_x + q_y*q_z);
+        gravity_z = q_w*q_w - q_x*q_x - q_y*q_y + q_z*q_z;
+
+        // calculate yaw/pitch/roll angles
+        yaw = (float) Math.atan2(2*q_x*q_y - 2*q_w*q_z, 2*q_w*q_w + 2*q_x*q_x - 1);
+        pitch = (float) Math.atan(gravity_x / Math.sqrt(gravity_y*gravity_y + gravity_z*gravity_z));
+        roll = (float) Math.atan(gravity_y / Math.sqrt(gravity_x*gravity_x + gravity_z*gravity_z));
+    }
+
+    private static float toQuaternionComponent(short raw) {
+        float q = ((float) raw) / QUATERNION_SCALE;
+        if (q >= 2) q = -4 + q; // Range-check quaternions
+        return q;
+    }
+
+    /**
+     * Removes gravity from a raw accelerometer reading, then rotates the
+     * result into the world reference frame.  setQuaternion() must have
+     * been called first.
+     * @param accel_x Raw accelerometer x-axis value
+     * @param accel_y Raw accelerometer y-axis value
+     * @param accel_z Raw accelerometer z-axis value
+     * @param accel_fsr_g Accelerometer full scale range, in g
+     */
+    public void removeGravity(short accel_x, short accel_y, short accel_z, short accel_fsr_g) {
+        // +1g = +4096 in standard DMP FIFO packet at the default range
+        linear_accel_x = (float) ((((float) accel_x) / (32768.0 / accel_fsr_g)) - gravity_x);
+        linear_accel_y = (float) ((((float) accel_y) / (32768.0 / accel_fsr_g)) - gravity_y);
+        linear_accel_z = (float) ((((float) accel_z) / (32768.0 / accel_fsr_g)) - gravity_z);
+
+        // P_out = q * P_in * conj(q), where P_in is the linear acceleration
+        // as a pure quaternion [0,x,y,z] and conj(q) = [w,-x,-y,-z].
+        // Quaternion multiplication is defined by:
+        //     (Q1 * Q2).w = (w1w2 - x1x2 - y1y2 - z1z2)
+        //     (Q1 * Q2).x = (w1x2 + x1w2 + y1z2 - z1y2)
+        //     (Q1 * Q2).y = (w1y2 - x1z2 + y1w2 + z1x2)
+        //     (Q1 * Q2).z = (w1z2 + x1y2 - y1x2 + z1w2)
+
+        // q * P_in
+        float p_w = - q_x*linear_accel_x - q_y*linear_accel_y - q_z*linear_accel_z;
+        float p_x = q_w*linear_accel_x + q_y*linear_accel_z - q_z*linear_accel_y;
+        float p_y = q_w*linear_accel_y - q_x*linear_accel_z + q_z*linear_accel_x;
+        float p_z = q_w*linear_accel_z + q_x*linear_accel_y - q_y*linear_accel_x;
+
+        // (q * P_in) * conj(q); the w component is always zero
+        world_linear_accel_x = p_w*-q_x + p_x*q_w + p_y*-q_z - p_z*-q_y;
+        world_linear_accel_y = p_w*-q_y - p_x*-q_z + p_y*q_w + p_z*-q_x;
+        world_linear_accel_z = p_w*-q_z + p_x*-q_y - p_y*-q_x + p_z*q_w;
+    }
+
+    /**
+     * Works out the compass heading from a raw magnetometer reading,
+     * compensated for the current pitch and roll.  setQuaternion() must
+     * have been called first.
+     * @param mag_x Raw magnetometer x-axis value
+     * @param mag_y Raw magnetometer y-axis value
+     * @param mag_z Raw magnetometer z-axis value
+     */
+    public void setTiltCompensatedHeading(short mag_x, short mag_y, short mag_z) {
+        float inverted_pitch = -pitch;
+
+        float cos_roll = (float) Math.cos(roll);
+        float sin_roll = (float) Math.sin(roll);
+        float cos_pitch = (float) Math.cos(inverted_pitch);
+        float sin_pitch = (float) Math.sin(inverted_pitch);
+
+        float MAG_X = mag_x * cos_pitch + mag_z * sin_pitch;
+        float MAG_Y = mag_x * sin_roll * sin_pitch + mag_y * cos_roll - mag_z * sin_roll * cos_pitch;
+        float heading_radians = (float) Math.atan2(MAG_Y, MAG_X);
+        float heading_degrees = (float) (heading_radians * (180.0 / Math.PI));
+
+        // Adjust compass for board orientation, and modify range from
+        // -180-180 to 0-360 degrees
+        heading_degrees -= 90.0;
+        if (heading_degrees < 0) {
+            heading_degrees += 360;
+        }
+        compass_heading = heading_degrees;
+    }
+}
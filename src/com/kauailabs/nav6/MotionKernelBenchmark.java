@@ -0,0 +1,195 @@
+/* ============================================
+ Nav6 source code is placed under the MIT license
+ Copyright (c) 2013 Kauai Labs
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===============================================
+ */
+package com.kauailabs.nav6;
+
+import java.util.Random;
+
+import com.milkenknights.common.Benchmark;
+
+/**
+ * Checks and times MotionKernel against the array based math that
+ * IMUAdvanced.setQuaternion() used before it, which is kept here as a
+ * reference.
+ *
+ * The check runs both on the same 1,000,000 random quaternion updates
+ * (the same ones every run) and fails (exit status 1) if any gravity,
+ * yaw/pitch/roll, world linear acceleration or compass heading value
+ * differs.  Values are compared with ==, so +0 and -0 count as equal:
+ * the kernel leaves out terms which multiply by a zero, which can only
+ * change the sign of a zero result.
+ *
+ * The timing fails if the kernel allocates anything, and prints how many
+ * bytes per second each version would allocate at 100 updates per second.
+ * See com.milkenknights.common.Benchmark for how to run this.
+ */
+public class MotionKernelBenchmark {
+
+    final static int CHECKED_UPDATES = 1000000;
+    final static int UPDATE_RATE_HZ = 100;
+    final static short ACCEL_FSR_G = 2;
+
+    /* gravity xyz, yaw, pitch, roll, world linear accel xyz, compass heading */
+    final static int RESULT_LENGTH = 10;
+
+    static float[] reference(short raw_q1, short raw_q2, short raw_q3, short raw_q4,
+            short accel_x, short accel_y, short accel_z,
+            short mag_x, short mag_y, short mag_z) {
+        float[] q = new float[4];
+        float[] gravity = new float[3];
+        float[] ypr = new float[3];
+        float q2[] = new float[4];
+        float q_product[] = new float[4];
+
+        q[0] = ((float)raw_q1) / 16384.0f;
+        q[1] = ((float)raw_q2) / 16384.0f;
+        q[2] = ((float)raw_q3) / 16384.0f;
+        q[3] = ((float)raw_q4) / 16384.0f;
+        for (int i = 0; i < 4; i++) if (q[i] >= 2) q[i] = -4 + q[i];
+
+        gravity[0] = 2 * (q[1]*q[3] - q[0]*q[2]);
+        gravity[1] = 2 * (q[0]*q[1] + q[2]*q[3]);
+        gravity[2] = q[0]*q[0] - q[1]*q[1] - q[2]*q[2] + q[3]*q[3];
+
+        ypr[0] = (float) Math.atan2(2*q[1]*q[2] - 2*q[0]*q[3], 2*q[0]*q[0] + 2*q[1]*q[1] - 1);
+        ypr[1] = (float) Math.atan(gravity[0] / Math.sqrt(gravity[1]*gravity[1] + gravity[2]*gravity[2]));
+        ypr[2] = (float) Math.atan(gravity[1] / Math.sqrt(gravity[0]*gravity[0] + gravity[2]*gravity[2]));
+
+        float linear_acceleration_x = (float) ((((float)accel_x) / (32768.0 / ACCEL_FSR_G)) - gravity[0]);
+        float linear_acceleration_y = (float) ((((float)accel_y) / (32768.0 / ACCEL_FSR_G)) - gravity[1]);
+        float linear_acceleration_z = (float) ((((float)accel_z) / (32768.0 / ACCEL_FSR_G)) - gravity[2]);
+
+        q2[0] = 0;
+        q2[1] = linear_acceleration_x;
+        q2[2] = linear_acceleration_y;
+        q2[3] = linear_acceleration_z;
+
+        q_product[0] = q[0]*q2[0] - q[1]*q2[1] - q[2]*q2[2] - q[3]*q2[3];
+        q_product[1] = q[0]*q2[1] + q[1]*q2[0] + q[2]*q2[3] - q[3]*q2[2];
+        q_product[2] = q[0]*q2[2] - q[1]*q2[3] + q[2]*q2[0] + q[3]*q2[1];
+        q_product[3] = q[0]*q2[3] + q[1]*q2[2] - q[2]*q2[1] + q[3]*q2[0];
+
+        float[] q_conjugate = new float[4];
+        q_conjugate[0] = q[0];
+        q_conjugate[1] = -q[1];
+        q_conjugate[2] = -q[2];
+        q_conjugate[3] = -q[3];
+
+        float[] q_final = new float[4];
+        q_final[0] = q_product[0]*q_conjugate[0] - q_product[1]*q_conjugate[1] - q_product[2]*q_conjugate[2] - q_product[3]*q_conjugate[3];
+        q_final[1] = q_product[0]*q_conjugate[1] + q_product[1]*q_conjugate[0] + q_product[2]*q_conjugate[3] - q_product[3]*q_conjugate[2];
+        q_final[2] = q_product[0]*q_conjugate[2] - q_product[1]*q_conjugate[3] + q_product[2]*q_conjugate[0] + q_product[3]*q_conjugate[1];
+        q_final[3] = q_product[0]*q_conjugate[3] + q_product[1]*q_conjugate[2] - q_product[2]*q_conjugate[1] + q_product[3]*q_conjugate[0];
+
+        float inverted_pitch = -ypr[1];
+        float roll_radians = ypr[2];
+        float cos_roll = (float) Math.cos(roll_radians);
+        float sin_roll = (float) Math.sin(roll_radians);
+        float cos_pitch = (float) Math.cos(inverted_pitch);
+        float sin_pitch = (float) Math.sin(inverted_pitch);
+        float MAG_X = mag_x * cos_pitch + mag_z * sin_pitch;
+        float MAG_Y = mag_x * sin_roll * sin_pitch + mag_y * cos_roll - mag_z * sin_roll * cos_pitch;
+        float heading_degrees = (float) (((float) Math.atan2(MAG_Y,MAG_X)) * (180.0 / Math.PI));
+        heading_degrees -= 90.0;
+        if ( heading_degrees < 0 ) {
+            heading_degrees += 360;
+        }
+
+        return new float[] { gravity[0], gravity[1], gravity[2], ypr[0], ypr[1], ypr[2],
+                q_final[1], q_final[2], q_final[3], heading_degrees };
+    }
+
+    static void run(MotionKernel kernel, short[] raw) {
+        kernel.setQuaternion(raw[0], raw[1], raw[2], raw[3]);
+        kernel.removeGravity(raw[4], raw[5], raw[6], ACCEL_FSR_G);
+        kernel.setTiltCompensatedHeading(raw[7], raw[8], raw[9]);
+    }
+
+    static boolean same(float a, float b) {
+        return (a == b) || (Float.isNaN(a) && Float.isNaN(b));
+    }
+
+    static void randomUpdate(Random random, short[] raw) {
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = (short) random.nextInt();
+        }
+    }
+
+    static void checkAgainstReference() {
+        Random random = new Random(2465);
+        MotionKernel kernel = new MotionKernel();
+        short[] raw = new short[10];
+        int mismatches = 0;
+        for (int n = 0; n < CHECKED_UPDATES; n++) {
+            randomUpdate(random, raw);
+            run(kernel, raw);
+            float[] expected = reference(raw[0], raw[1], raw[2], raw[3],
+                    raw[4], raw[5], raw[6], raw[7], raw[8], raw[9]);
+            float[] actual = new float[] {
+                    kernel.gravity_x, kernel.gravity_y, kernel.gravity_z,
+                    kernel.yaw, kernel.pitch, kernel.roll,
+                    kernel.world_linear_accel_x, kernel.world_linear_accel_y,
+                    kernel.world_linear_accel_z, kernel.compass_heading };
+            for (int i = 0; i < RESULT_LENGTH; i++) {
+                if (!same(expected[i], actual[i])) {
+                    mismatches++;
+                    break;
+                }
+            }
+        }
+        Benchmark.check(mismatches == 0, mismatches + " of " + CHECKED_UPDATES
+                + " updates differed from the reference");
+    }
+
+    public static void main(String[] args) {
+        checkAgainstReference();
+
+        final short[][] updates = new short[64][10];
+        Random random = new Random(1);
+        for (short[] raw : updates) {
+            randomUpdate(random, raw);
+        }
+        final MotionKernel kernel = new MotionKernel();
+        final int[] next = new int[1];
+        final float[] sink = new float[1];
+
+        Benchmark.Result kernel_result = Benchmark.run("MotionKernel, one update", 1000000, () -> {
+            run(kernel, updates[next[0]++ & 63]);
+            sink[0] += kernel.world_linear_accel_x;
+        });
+        Benchmark.checkNoAllocation(kernel_result, "MotionKernel");
+
+        Benchmark.Result reference_result = Benchmark.run("array reference, one update", 1000000, () -> {
+            short[] raw = updates[next[0]++ & 63];
+            sink[0] += reference(raw[0], raw[1], raw[2], raw[3],
+                    raw[4], raw[5], raw[6], raw[7], raw[8], raw[9])[6];
+        });
+
+        Benchmark.print(String.format("At %d Hz: MotionKernel allocates %.0f bytes/s, "
+                + "the array reference %.0f bytes/s", UPDATE_RATE_HZ,
+                kernel_result.bytesPerOp * UPDATE_RATE_HZ,
+                reference_result.bytesPerOp * UPDATE_RATE_HZ));
+
+        Benchmark.finish();
+    }
+}
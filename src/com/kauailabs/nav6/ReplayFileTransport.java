@@ -0,0 +1,141 @@
+/* ============================================
+ Nav6 source code is placed under the MIT license
+ Copyright (c) 2013 Kauai Labs
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===============================================
+ */
+package com.kauailabs.nav6;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.milkenknights.common.ControlLoop;
+
+/**
+ * An IMUTransport which plays back bytes recorded from a nav6 or navX-MXP
+ * serial port, so the IMU classes can be run against a real capture on a
+ * development machine.
+ *
+ * Playback can either run as fast as the bytes can be decoded, or be paced
+ * at the serial port's baud rate so that updates arrive about as often as
+ * they did on the robot.  Either way, getClock() gives the time at which
+ * the bytes read so far would have finished arriving at the baud rate,
+ * so updates can be timestamped the same way no matter how fast the file
+ * is played back.  Commands written to the transport are thrown away.
+ * Once the whole file has been read, read() returns -1, which stops the
+ * IMU's thread.
+ */
+public class ReplayFileTransport implements IMUTransport {
+
+    /* one start bit, eight data bits and one stop bit per byte */
+    final static int BITS_PER_BYTE = 10;
+    final static int MAX_READ_LENGTH = 64;
+
+    private final InputStream input;
+    private final int baud_rate;
+    private final boolean paced;
+    private volatile long bytes_replayed;
+
+    /**
+     * Constructs a transport which plays the file back as fast as possible.
+     * @param file_name Path of the recorded bytes
+     * @throws IOException If the file can't be opened
+     */
+    public ReplayFileTransport(String file_name) throws IOException {
+        this(file_name, 0);
+    }
+
+    /**
+     * Constructs a transport.
+     * @param file_name Path of the recorded bytes
+     * @param baud_rate Baud rate to pace playback at, or 0 to not pace it
+     * @throws IOException If the file can't be opened
+     */
+    public ReplayFileTransport(String file_name, int baud_rate) throws IOException {
+        this(file_name, baud_rate, baud_rate > 0);
+    }
+
+    /**
+     * Constructs a transport.
+     * @param file_name Path of the recorded bytes
+     * @param baud_rate Baud rate the bytes were recorded at, or 0 if unknown
+     * @param paced Whether to pace playback at the baud rate
+     * @throws IOException If the file can't be opened
+     */
+    public ReplayFileTransport(String file_name, int baud_rate, boolean paced)
+            throws IOException {
+        this.input = new FileInputStream(file_name);
+        this.baud_rate = baud_rate;
+        this.paced = paced && baud_rate > 0;
+    }
+
+    /**
+     * Returns a clock which reads the time at which the bytes read so far
+     * would have finished arriving at the baud rate, counting from the
+     * start of the file.  The clock stays at zero if the baud rate is 0.
+     * It only moves as bytes are read, so sleepUntil() does not wait.
+     * @return The playback clock
+     */
+    public ControlLoop.Clock getClock() {
+        return new ControlLoop.Clock() {
+            public long nanoTime() {
+                if (baud_rate <= 0) {
+                    return 0;
+                }
+                return bytes_replayed * BITS_PER_BYTE * 1000000000L / baud_rate;
+            }
+
+            public void sleepUntil(long deadline) {
+            }
+        };
+    }
+
+    public int read(byte[] buffer, int offset, int length) {
+        int bytes_read;
+        try {
+            // short reads, like the serial port's, so that packets are
+            // split across reads the same way they are on the robot
+            bytes_read = input.read(buffer, offset, Math.min(length, MAX_READ_LENGTH));
+            if (bytes_read < 0) {
+                input.close();
+                return -1;
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        bytes_replayed += bytes_read;
+        if (paced) {
+            try {
+                Thread.sleep((long) bytes_read * BITS_PER_BYTE * 1000 / baud_rate);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return bytes_read;
+    }
+
+    public void write(byte[] buffer, int length) {
+    }
+
+    public void reset() {
+        // a recording has nothing waiting to be thrown away
+    }
+}
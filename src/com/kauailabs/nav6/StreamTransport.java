@@ -0,0 +1,87 @@
+/* ============================================
+ Nav6 source code is placed under the MIT license
+ Copyright (c) 2013 Kauai Labs
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===============================================
+ */
+package com.kauailabs.nav6;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * An IMUTransport over a pair of Java streams.  This is mostly useful for
+ * driving the IMU classes without a nav6 attached, e.g. from a
+ * PipedInputStream fed with packets by a test, or from a file of bytes
+ * recorded from a real nav6.
+ *
+ * I/O errors are rethrown as RuntimeExceptions, which the IMU thread treats
+ * the same way as a serial port timeout.
+ */
+public class StreamTransport implements IMUTransport {
+
+    private final InputStream input;
+    private final OutputStream output;
+
+    /**
+     * Constructs a transport.
+     *
+     * @param input Where bytes from the IMU are read from
+     * @param output Where commands to the IMU are written, or null to throw
+     * them away
+     */
+    public StreamTransport(InputStream input, OutputStream output) {
+        this.input = input;
+        this.output = output;
+    }
+
+    public int read(byte[] buffer, int offset, int length) {
+        try {
+            // blocks until at least one byte is available
+            return input.read(buffer, offset, length);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    public void write(byte[] buffer, int length) {
+        if (output == null) {
+            return;
+        }
+        try {
+            output.write(buffer, 0, length);
+            output.flush();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    public void reset() {
+        try {
+            int available = input.available();
+            if (available > 0) {
+                input.skip(available);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
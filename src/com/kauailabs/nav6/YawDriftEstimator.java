@@ -0,0 +1,227 @@
+/* ============================================
+ Nav6 source code is placed under the MIT license
+ Copyright (c) 2013 Kauai Labs
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===============================================
+ */
+package com.kauailabs.nav6;
+
+/**
+ * Learns how fast the IMU's yaw drifts while the robot is sitting still,
+ * and works out a correction which removes that drift from the yaw.
+ *
+ * Whenever the IMU has been stationary for a little while, a straight
+ * line is fitted to yaw against time.  The slope of each such segment is
+ * a measurement of the drift rate, and is folded into a running estimate
+ * weighted by how long the segment lasted.  Only the last
+ * DEFAULT_MAX_WEIGHT seconds or so of stationary data count, so the
+ * estimate follows slow changes such as the gyro warming up.  Segments
+ * whose slope is too steep to be drift (e.g. the robot was turning in
+ * place, which doesn't show up as linear acceleration) are thrown away.
+ *
+ * The correction is the estimated drift rate integrated over time, moving
+ * or not, and is meant to be subtracted from the yaw reported by the IMU.
+ *
+ * Nothing is allocated after construction.  An estimator is not thread
+ * safe; it is meant to be owned by the thread which decodes the IMU's
+ * packets, and its results copied out from there.
+ */
+public class YawDriftEstimator {
+
+    /* seconds to wait after motion stops before measuring */
+    public final static double DEFAULT_SETTLE_TIME = 0.5;
+    /* seconds of stationary data in each fitted segment */
+    public final static double DEFAULT_SEGMENT_TIME = 2.0;
+    /* shortest segment (seconds) that is used when motion cuts it short */
+    public final static double DEFAULT_MIN_SEGMENT_TIME = 1.0;
+    /* degrees/second; anything steeper is not drift */
+    public final static double DEFAULT_MAX_DRIFT_RATE = 0.5;
+    /* seconds of stationary data at which confidence reaches 1 */
+    public final static double DEFAULT_MAX_WEIGHT = 30.0;
+
+    private final double settle_time;
+    private final double segment_time;
+    private final double min_segment_time;
+    private final double max_drift_rate;
+    private final double max_weight;
+
+    private double drift_rate;
+    private double weight;
+    private double correction;
+
+    private boolean started;
+    private double last_timestamp;
+    private double stationary_start;
+    private boolean stationary;
+
+    /* least squares sums for the current segment, relative to its start */
+    private int segment_count;
+    private double segment_start_time;
+    private float segment_start_yaw;
+    private double sum_t;
+    private double sum_y;
+    private double sum_tt;
+    private double sum_ty;
+    private double segment_last_t;
+
+    /**
+     * Constructs an estimator with the default settings.
+     */
+    public YawDriftEstimator() {
+        this(DEFAULT_SETTLE_TIME, DEFAULT_SEGMENT_TIME, DEFAULT_MIN_SEGMENT_TIME,
+                DEFAULT_MAX_DRIFT_RATE, DEFAULT_MAX_WEIGHT);
+    }
+
+    /**
+     * Constructs an estimator.
+     * @param settle_time Seconds to wait after motion stops before measuring
+     * @param segment_time Seconds of stationary data in each fitted segment
+     * @param min_segment_time Shortest segment (in seconds) to use when
+     * motion cuts a segment short
+     * @param max_drift_rate Steepest slope (in degrees/second) to accept as
+     * drift
+     * @param max_weight Seconds of stationary data at which the confidence
+     * reaches 1; older data is gradually forgotten after that
+     */
+    public YawDriftEstimator(double settle_time, double segment_time, double min_segment_time,
+            double max_drift_rate, double max_weight) {
+        this.settle_time = settle_time;
+        this.segment_time = segment_time;
+        this.min_segment_time = min_segment_time;
+        this.max_drift_rate = max_drift_rate;
+        this.max_weight = max_weight;
+    }
+
+    /**
+     * Forgets the learned drift rate and the accumulated correction.
+     */
+    public void reset() {
+        drift_rate = 0;
+        weight = 0;
+        correction = 0;
+        started = false;
+        stationary = false;
+        segment_count = 0;
+    }
+
+    /**
+     * Adds a yaw sample.
+     * @param yaw Yaw (in degrees) reported by the IMU, without any drift
+     * correction applied
+     * @param is_stationary Whether the IMU is currently stationary
+     * @param timestamp Time (in seconds) at which the sample was taken
+     * @param accumulate_correction Whether to add this sample's share of
+     * drift to the correction
+     */
+    public void update(float yaw, boolean is_stationary, double timestamp, boolean accumulate_correction) {
+        if (started && accumulate_correction) {
+            correction = wrapDegrees(correction + drift_rate * (timestamp - last_timestamp));
+        }
+        started = true;
+        last_timestamp = timestamp;
+
+        if (!is_stationary) {
+            endSegment();
+            stationary = false;
+            return;
+        }
+        if (!stationary) {
+            stationary = true;
+            stationary_start = timestamp;
+        }
+        if (timestamp - stationary_start < settle_time) {
+            return;
+        }
+
+        if (segment_count == 0) {
+            segment_start_time = timestamp;
+            segment_start_yaw = yaw;
+        }
+        double t = timestamp - segment_start_time;
+        double y = wrapDegrees(yaw - segment_start_yaw);
+        segment_count++;
+        sum_t += t;
+        sum_y += y;
+        sum_tt += t * t;
+        sum_ty += t * y;
+        segment_last_t = t;
+        if (t >= segment_time) {
+            endSegment();
+        }
+    }
+
+    // Folds the current segment's slope into the drift rate estimate, if
+    // the segment is long enough and its slope is believable
+    
+    private void endSegment() {
+        if (segment_count >= 3 && segment_last_t >= min_segment_time) {
+            double denominator = segment_count * sum_tt - sum_t * sum_t;
+            if (denominator > 0) {
+                double slope = (segment_count * sum_ty - sum_t * sum_y) / denominator;
+                if (Math.abs(slope) <= max_drift_rate) {
+                    double duration = segment_last_t;
+                    drift_rate = (drift_rate * weight + slope * duration) / (weight + duration);
+                    weight = Math.min(weight + duration, max_weight);
+                }
+            }
+        }
+        segment_count = 0;
+        sum_t = 0;
+        sum_y = 0;
+        sum_tt = 0;
+        sum_ty = 0;
+        segment_last_t = 0;
+    }
+
+    private static double wrapDegrees(double degrees) {
+        if (degrees > 180) {
+            degrees -= 360;
+        } else if (degrees < -180) {
+            degrees += 360;
+        }
+        return degrees;
+    }
+
+    /**
+     * Returns the estimated drift rate.
+     * @return The drift rate (in degrees/second).
+     */
+    public float getDriftRate() {
+        return (float) drift_rate;
+    }
+
+    /**
+     * Returns how much stationary data the drift rate is based on, as a
+     * fraction of the amount needed for a fully trusted estimate.
+     * @return The confidence, from 0 (nothing learned yet) to 1.
+     */
+    public float getConfidence() {
+        return (float) (weight / max_weight);
+    }
+
+    /**
+     * Returns the accumulated drift, which should be subtracted from the
+     * yaw reported by the IMU.
+     * @return The correction (in degrees, from -180 to 180).
+     */
+    public float getCorrection() {
+        return (float) correction;
+    }
+}
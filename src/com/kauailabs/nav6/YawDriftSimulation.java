@@ -0,0 +1,100 @@
+/* ============================================
+ Nav6 source code is placed under the MIT license
+ Copyright (c) 2013 Kauai Labs
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===============================================
+ */
+package com.kauailabs.nav6;
+
+import java.util.Random;
+
+import com.milkenknights.common.Benchmark;
+
+/**
+ * Runs a YawDriftEstimator against a simulated match and checks what it
+ * learns.  The simulated gyro drifts at DRIFT_RATE with noise, and the
+ * robot alternates between sitting still and driving, with a pivot in
+ * place that the accelerometer can't see (so it looks stationary).
+ *
+ * Prints the learned drift rate and the yaw error at the end, with and
+ * without correction, and fails (exit status 1) if the learned rate is
+ * more than MAX_RATE_ERROR off, or if correction doesn't leave the yaw
+ * closer to the truth than no correction.  The noise is seeded, so every
+ * run gives the same result.  See com.milkenknights.common.Benchmark for
+ * how to run this.
+ */
+public class YawDriftSimulation {
+
+    final static double DRIFT_RATE = 0.05;          /* degrees/second */
+    final static double NOISE_DEGREES = 0.02;       /* standard deviation */
+    final static double UPDATE_PERIOD = 0.01;       /* 100 Hz */
+    final static double DURATION = 120;             /* seconds */
+    final static double MAX_RATE_ERROR = 0.1;       /* fraction of DRIFT_RATE */
+
+    public static void main(String[] args) {
+        Random random = new Random(2465);
+        YawDriftEstimator estimator = new YawDriftEstimator();
+        double true_yaw = 0;
+        float reported_yaw = 0;
+        int steps = (int) Math.round(DURATION / UPDATE_PERIOD);
+
+        for (int i = 0; i <= steps; i++) {
+            double t = i * UPDATE_PERIOD;
+            double phase = t % 15;
+            boolean stationary = phase < 10;
+            if (!stationary) {
+                /* driving and turning */
+                true_yaw += 20 * UPDATE_PERIOD;
+            } else if (t >= 60 && t < 62) {
+                /* a 90 degree pivot which looks stationary */
+                true_yaw += 45 * UPDATE_PERIOD;
+            }
+            reported_yaw = (float) wrapDegrees(true_yaw + DRIFT_RATE * t
+                    + random.nextGaussian() * NOISE_DEGREES);
+            estimator.update(reported_yaw, stationary, t, true);
+        }
+
+        double rate_error = Math.abs(estimator.getDriftRate() - DRIFT_RATE) / DRIFT_RATE;
+        double uncorrected_error = Math.abs(wrapDegrees(reported_yaw - true_yaw));
+        double corrected_error = Math.abs(wrapDegrees(reported_yaw
+                - estimator.getCorrection() - true_yaw));
+        Benchmark.print(String.format("Learned drift rate %.4f deg/s (actual %.4f), "
+                + "confidence %.2f", estimator.getDriftRate(), DRIFT_RATE,
+                estimator.getConfidence()));
+        Benchmark.print(String.format("Yaw error after %.0f s: %.3f deg corrected, "
+                + "%.3f deg uncorrected", DURATION, corrected_error, uncorrected_error));
+
+        Benchmark.check(rate_error <= MAX_RATE_ERROR, String.format(
+                "learned drift rate is off by %.1f%%", rate_error * 100));
+        Benchmark.check(corrected_error < uncorrected_error,
+                "correction made the yaw worse");
+        Benchmark.finish();
+    }
+
+    static double wrapDegrees(double degrees) {
+        while (degrees > 180) {
+            degrees -= 360;
+        }
+        while (degrees < -180) {
+            degrees += 360;
+        }
+        return degrees;
+    }
+}
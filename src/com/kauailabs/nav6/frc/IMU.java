@@ -10,9 +10,10 @@
 
 package com.kauailabs.nav6.frc;
 
-import java.util.Arrays;
-
+import com.kauailabs.nav6.IMUPacketReader;
 import com.kauailabs.nav6.IMUProtocol;
+import com.kauailabs.nav6.IMUTransport;
+import com.milkenknights.common.ControlLoop;
 
 import edu.wpi.first.wpilibj.PIDSource;
 import edu.wpi.first.wpilibj.SensorBase;
@@ -21,6 +22,8 @@ import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.livewindow.LiveWindowSendable;
 import edu.wpi.first.wpilibj.tables.ITable;
 
+import java.util.concurrent.locks.LockSupport;
+
 /**
  * The IMU class provides a simplified interface to the KauaiLabs nav6 IMU.
  * 
@@ -33,14 +36,32 @@ import edu.wpi.first.wpilibj.tables.ITable;
  */
 public class IMU extends SensorBase implements PIDSource, LiveWindowSendable, Runnable {
 
-    static final int    YAW_HISTORY_LENGTH      = 10;
-    static final byte   DEFAULT_UPDATE_RATE_HZ  = 100;
+    static final int    YAW_HISTORY_LENGTH      = 128;
+    static final int    ZERO_YAW_SAMPLES        = 10;
+    protected static final byte DEFAULT_UPDATE_RATE_HZ = 100;
     static final short  DEFAULT_ACCEL_FSR_G     = 2;
     static final short  DEFAULT_GYRO_FSR_DPS    = 2000;
     
-    SerialPort serial_port;
-    float yaw_history[];
-    int next_yaw_history_index;
+    /**
+     * The clock used by default, based on Timer.getFPGATimestamp(), so
+     * that update timestamps can be compared with other FPGA times.
+     */
+    public static final ControlLoop.Clock FPGA_CLOCK = new ControlLoop.Clock() {
+        public long nanoTime() {
+            return (long) (Timer.getFPGATimestamp() * 1e9);
+        }
+
+        public void sleepUntil(long deadline) {
+            long remaining;
+            while ((remaining = deadline - nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+    };
+
+    IMUTransport transport;
+    private final ControlLoop.Clock clock;
+    YawHistory yaw_history;
     double user_yaw_offset;
     ITable m_table;
     Thread m_thread;
@@ -56,10 +77,18 @@ public class IMU extends SensorBase implements PIDSource, LiveWindowSendable, Ru
     volatile short accel_fsr_g;
     volatile short gyro_fsr_dps;
     volatile short flags;    
+    
+    // Sequence lock around yaw, pitch, roll, compass_heading,
+    // last_update_time and update_count.  It is odd while the reader
+    // thread is changing them.
+    private volatile int orientation_sequence = 0;
 
-    double last_update_time;
+    volatile double last_update_time;
     boolean stop = false;
     private IMUProtocol.YPRUpdate ypr_update_data;
+    private IMUProtocol.StreamResponse stream_response_data;
+    private boolean stream_response_received;
+    private IMUPacketReader packet_reader;
     protected byte update_type = IMUProtocol.MSGID_YPR_UPDATE;
     
     /**
@@ -73,23 +102,71 @@ public class IMU extends SensorBase implements PIDSource, LiveWindowSendable, Ru
      * @param update_rate_hz Custom Update Rate (Hz)
      */
     public IMU(SerialPort serial_port, byte update_rate_hz) {
+        this(new SerialTransport(serial_port), update_rate_hz);
+    }
+    
+    /**
+     * Constructs the IMU class, reading from any transport rather
+     * than a serial port, e.g. a StreamTransport fed with recorded
+     * or simulated nav6 data.
+     * @param transport IMUTransport to read from
+     * @param update_rate_hz Custom Update Rate (Hz)
+     */
+    public IMU(IMUTransport transport, byte update_rate_hz) {
+        this(transport, update_rate_hz, FPGA_CLOCK);
+    }
+    
+    /**
+     * Constructs the IMU class, reading from any transport and
+     * timestamping updates with any clock rather than the FPGA's,
+     * e.g. when replaying a recording off the robot.
+     * @param transport IMUTransport to read from
+     * @param update_rate_hz Custom Update Rate (Hz)
+     * @param clock Clock to timestamp updates with
+     */
+    public IMU(IMUTransport transport, byte update_rate_hz, ControlLoop.Clock clock) {
+        this(transport, update_rate_hz, IMUProtocol.MSGID_YPR_UPDATE, new IMUPacketReader(),
+                clock);
+    }
+    
+    /**
+     * Constructs the IMU class for a subclass which streams a
+     * different type of update packet.
+     * 
+     * The update type is set before the stream command is first
+     * sent and before the thread which receives data is started,
+     * so the IMU is asked for the right packets from the start.
+     * For the same reason, subclasses must allocate anything their
+     * decodePacketHandler() uses in initIMU() rather than in their
+     * own constructor, since initIMU() runs before the thread starts.
+     * @param transport IMUTransport to read from
+     * @param update_rate_hz Custom Update Rate (Hz)
+     * @param update_type Stream type to request, e.g. IMUProtocol.MSGID_QUATERNION_UPDATE
+     * @param packet_reader IMUPacketReader which can frame that type of packet
+     * @param clock Clock to timestamp updates with
+     */
+    protected IMU(IMUTransport transport, byte update_rate_hz, byte update_type,
+            IMUPacketReader packet_reader, ControlLoop.Clock clock) {
+        this.clock = clock;
         ypr_update_data = new IMUProtocol.YPRUpdate();
+        stream_response_data = new IMUProtocol.StreamResponse();
+        this.packet_reader = packet_reader;
+        this.update_type = update_type;
         this.update_rate_hz = update_rate_hz;
         flags = 0;
         accel_fsr_g = DEFAULT_ACCEL_FSR_G;
         gyro_fsr_dps = DEFAULT_GYRO_FSR_DPS;
-        this.serial_port = serial_port;
-        yaw_history = new float[YAW_HISTORY_LENGTH];
+        this.transport = transport;
         yaw = (float) 0.0;
         pitch = (float) 0.0;
         roll = (float) 0.0;
         try {
-            serial_port.reset();
+            transport.reset();
         } catch (RuntimeException ex) {
             ex.printStackTrace();
         }
         initIMU();
-        m_thread = new Thread(this);
+        m_thread = new Thread(this, "IMU");
         m_thread.start();        
     }
     
@@ -102,18 +179,17 @@ public class IMU extends SensorBase implements PIDSource, LiveWindowSendable, Ru
         this(serial_port,DEFAULT_UPDATE_RATE_HZ);
     }
 
+    /**
+     * Constructs the IMU class, reading from any transport and using
+     * the default update rate.
+     * @param transport IMUTransport to read from
+     */
+    public IMU(IMUTransport transport) {
+        this(transport, DEFAULT_UPDATE_RATE_HZ);
+    }
+
     protected void initIMU() {
         
-        // The nav6 IMU serial port configuration is 8 data bits, no parity, one stop bit. 
-        // No flow control is used.
-        // Conveniently, these are the defaults used by the WPILib's SerialPort class.
-        //
-        // In addition, the WPILib's SerialPort class also defaults to:
-        //
-        // Timeout period of 5 seconds
-        // Termination ('\n' character)
-        // Transmit immediately
-
         initializeYawHistory();
         user_yaw_offset = 0;
 
@@ -121,7 +197,7 @@ public class IMU extends SensorBase implements PIDSource, LiveWindowSendable, Ru
 	byte stream_command_buffer[] = new byte[256];
 	int packet_length = IMUProtocol.encodeStreamCommand( stream_command_buffer, update_type, update_rate_hz ); 
         try {
-            serial_port.write( stream_command_buffer, packet_length );
+            transport.write( stream_command_buffer, packet_length );
         } catch (RuntimeException ex) {
         	ex.printStackTrace();
         }
@@ -138,39 +214,43 @@ public class IMU extends SensorBase implements PIDSource, LiveWindowSendable, Ru
         
     private void initializeYawHistory() {
 
-        Arrays.fill(yaw_history,0);
-        next_yaw_history_index = 0;
+        yaw_history = new YawHistory(YAW_HISTORY_LENGTH);
         last_update_time = 0.0;
     }
 
-    private void setYawPitchRoll(float yaw, float pitch, float roll, float compass_heading) {
+    // Publishes the orientation from a newly received update packet, so
+    // that getOrientation() always sees values from a single packet
+    
+    protected void setOrientation(float yaw, float pitch, float roll, float compass_heading) {
+        setOrientation(yaw, pitch, roll, compass_heading, getTimestamp());
+    }
 
+    /**
+     * Returns the current time from the clock this IMU was constructed
+     * with, which is the FPGA time unless another clock was given.
+     * @return The current time, in seconds.
+     */
+    protected double getTimestamp() {
+        return clock.nanoTime() / 1e9;
+    }
+
+    // As above, for subclasses which need the packet's timestamp before
+    // the orientation is published
+    
+    protected void setOrientation(float yaw, float pitch, float roll, float compass_heading,
+            double timestamp) {
+
+        int sequence = orientation_sequence;
+        orientation_sequence = sequence + 1;
         this.yaw = yaw;
         this.pitch = pitch;
         this.roll = roll;
         this.compass_heading = compass_heading;
+        this.last_update_time = timestamp;
+        this.update_count++;
+        orientation_sequence = sequence + 2;
 
-        updateYawHistory(this.yaw);
-    }
-
-    protected void updateYawHistory(float curr_yaw) {
-
-        if (next_yaw_history_index >= YAW_HISTORY_LENGTH) {
-            next_yaw_history_index = 0;
-        }
-        yaw_history[next_yaw_history_index] = curr_yaw;
-        last_update_time = Timer.getFPGATimestamp();
-        next_yaw_history_index++;
-    }
-
-    private double getAverageFromYawHistory() {
-
-        double yaw_history_sum = 0.0;
-        for (int i = 0; i < YAW_HISTORY_LENGTH; i++) {
-            yaw_history_sum += yaw_history[i];
-        }
-        double yaw_history_avg = yaw_history_sum / YAW_HISTORY_LENGTH;
-        return yaw_history_avg;
+        yaw_history.add(timestamp, yaw);
     }
 
     /**
@@ -201,7 +281,37 @@ public class IMU extends SensorBase implements PIDSource, LiveWindowSendable, Ru
      * @return The current yaw value in degrees (-180 to 180).
      */
     public float getYaw() {
-        float calculated_yaw = (float) (this.yaw - user_yaw_offset);
+        return applyUserYawOffset(this.yaw);
+    }
+
+    /**
+     * Returns the yaw value (in degrees, from -180 to 180) at a
+     * moment in the recent past, interpolated between the updates
+     * received from the nav6 IMU on either side of it.
+     * 
+     * This is useful for lining up the heading with another
+     * measurement, e.g. a camera image, which was taken a little
+     * while ago.  Roughly the last second of updates is kept; times
+     * before that give the oldest yaw kept, and times after the
+     * latest update give the current yaw.  The timestamps are the
+     * times at which updates were received, so they include the
+     * time taken to send each update over the serial port.
+     * 
+     * The user-specified yaw offset (see zeroYaw()) is applied.
+     * @param fpga_time Timestamp, in seconds, from this IMU's clock
+     * (by default Timer.getFPGATimestamp())
+     * @return The yaw value at that time, in degrees (-180 to 180).
+     */
+    public float getYawAt(double fpga_time) {
+        float history_yaw = yaw_history.getYawAt(fpga_time);
+        if (Float.isNaN(history_yaw)) {
+            return getYaw();
+        }
+        return applyUserYawOffset(history_yaw);
+    }
+
+    private float applyUserYawOffset(float yaw) {
+        float calculated_yaw = (float) (yaw - user_yaw_offset);
         if (calculated_yaw < -180) {
             calculated_yaw += 360;
         }
@@ -211,6 +321,34 @@ public class IMU extends SensorBase implements PIDSource, LiveWindowSendable, Ru
         return calculated_yaw;
     }
 
+    /**
+     * Copies the current orientation into a snapshot.  Unlike calling
+     * getYaw(), getPitch() and so on one after another, every value in
+     * the snapshot is guaranteed to come from the same update packet.
+     * 
+     * This never blocks the thread receiving data from the nav6 IMU,
+     * and does not allocate, so it is suitable for use in a control loop.
+     * @param orientation The snapshot to fill in.
+     */
+    public void getOrientation(IMUOrientation orientation) {
+        int sequence;
+        do {
+            sequence = orientation_sequence;
+            if ((sequence & 1) != 0) {
+                // an update is being written; let the reader thread finish
+                Thread.yield();
+                continue;
+            }
+            orientation.yaw = this.yaw;
+            orientation.pitch = this.pitch;
+            orientation.roll = this.roll;
+            orientation.compass_heading = this.compass_heading;
+            orientation.timestamp = this.last_update_time;
+            orientation.update_count = this.update_count;
+        } while (((sequence & 1) != 0) || (sequence != orientation_sequence));
+        orientation.yaw = applyUserYawOffset(orientation.yaw);
+    }
+
     /**
      * Returns the current tilt-compensated compass heading 
      * value (in degrees, from 0 to 360) reported by the nav6 IMU.
@@ -233,7 +371,7 @@ public class IMU extends SensorBase implements PIDSource, LiveWindowSendable, Ru
      * the getYaw() method.
      */
     public void zeroYaw() {
-        user_yaw_offset = getAverageFromYawHistory();
+        user_yaw_offset = yaw_history.getAverageYaw(ZERO_YAW_SAMPLES);
     }
 
     /**
@@ -244,10 +382,21 @@ public class IMU extends SensorBase implements PIDSource, LiveWindowSendable, Ru
      * @return Returns true if a valid update has been received within the last second.
      */
     public boolean isConnected() {
-        double time_since_last_update = Timer.getFPGATimestamp() - this.last_update_time;
+        double time_since_last_update = getTimestamp() - this.last_update_time;
         return time_since_last_update <= 1.0;
     }
 
+    /**
+     * Returns the timestamp (in seconds) at which the most
+     * recent update was received from the nav6 IMU.  Comparing
+     * this with the IMU's clock (by default Timer.getFPGATimestamp())
+     * gives the age of the current yaw, pitch and roll values.
+     * @return The time of the most recent update, in seconds.
+     */
+    public double getLastUpdateTime() {
+        return last_update_time;
+    }
+
     /**
      * Returns the count in bytes of data received from the
      * nav6 IMU.  This could can be useful for diagnosing 
@@ -262,6 +411,27 @@ public class IMU extends SensorBase implements PIDSource, LiveWindowSendable, Ru
         return byte_count;
     }
 
+    /**
+     * Returns the count of bytes received from the nav6 IMU which
+     * were discarded because they were not part of a valid packet.
+     * 
+     * A steadily increasing count indicates noise on the serial
+     * line, or a mismatched baud rate.
+     * @return The number of bytes discarded.
+     */
+    public double getBytesDiscarded() {
+        return packet_reader.getBytesDiscarded();
+    }
+
+    /**
+     * Returns the count of packets received from the nav6 IMU
+     * which were discarded because their checksum was invalid.
+     * @return The number of checksum failures.
+     */
+    public double getChecksumFailures() {
+        return packet_reader.getChecksumFailures();
+    }
+
     /**
      * Returns the count of valid update packets which have
      * been received from the nav6 IMU.  This count should increase
@@ -332,38 +502,44 @@ public class IMU extends SensorBase implements PIDSource, LiveWindowSendable, Ru
         
         int packet_length = IMUProtocol.decodeYPRUpdate(received_data, offset, bytes_remaining, ypr_update_data);
         if (packet_length > 0) {
-            setYawPitchRoll(ypr_update_data.yaw,ypr_update_data.pitch,ypr_update_data.roll,ypr_update_data.compass_heading);
+            setOrientation(ypr_update_data.yaw,ypr_update_data.pitch,ypr_update_data.roll,ypr_update_data.compass_heading);
         }
         return packet_length;
     }
     
+    // Invoked by the packet reader for each complete packet with a valid
+    // checksum; returns true if the packet was decoded
+    
+    private boolean handlePacket(byte[] received_data, int offset, int length) {
+        
+        if (decodePacketHandler(received_data, offset, length) > 0) {
+            return true;
+        }
+        if (IMUProtocol.decodeStreamResponse(received_data, offset, length, stream_response_data) > 0) {
+            setStreamResponse(stream_response_data);
+            stream_response_received = true;
+            return true;
+        }
+        return false;
+    }
+    
     // IMU Class thread run method
     
     public void run() {
 
         stop = false;
-        boolean stream_response_received = false;
+        stream_response_received = false;
         double last_stream_command_sent_timestamp = 0.0;
-        try {
-            serial_port.setReadBufferSize(512);
-            serial_port.setTimeout(1.0);
-            serial_port.enableTermination('\n');
-            serial_port.flush();
-            serial_port.reset();
-        } catch (RuntimeException ex) {
-            ex.printStackTrace();
-        }
-                
-        IMUProtocol.StreamResponse response = new IMUProtocol.StreamResponse();
+
+        IMUPacketReader.PacketHandler packet_handler = this::handlePacket;
 
         byte[] stream_command = new byte[256];
         
 	int cmd_packet_length = IMUProtocol.encodeStreamCommand( stream_command, update_type, update_rate_hz ); 
         try {
-            serial_port.reset();
-            serial_port.write( stream_command, cmd_packet_length );
-            serial_port.flush();
-            last_stream_command_sent_timestamp = Timer.getFPGATimestamp();
+            transport.reset();
+            transport.write( stream_command, cmd_packet_length );
+            last_stream_command_sent_timestamp = getTimestamp();
         } catch (RuntimeException ex) {
         	ex.printStackTrace();
         }
@@ -371,74 +547,44 @@ public class IMU extends SensorBase implements PIDSource, LiveWindowSendable, Ru
         while (!stop) {
             try {
 
-                // Wait, with delays to conserve CPU resources, until
-                // bytes have arrived.
+                // Block until bytes arrive (or the transport times out).
+                // The bytes go straight into the packet reader's buffer,
+                // which keeps any packet split across two reads until the
+                // rest arrives, and each packet is decoded as soon as its
+                // last byte is read.
                 
-                while ( !stop && ( serial_port.getBytesReceived() < 1 ) ) {
-                    Timer.delay(0.1);
+                int bytes_read = transport.read(packet_reader.getBuffer(),
+                        packet_reader.getWriteOffset(), packet_reader.getWritableLength());
+                if (bytes_read < 0) {
+                    // The transport has closed; no more data will arrive
+                    break;
                 }
-
-                int packets_received = 0;
-                byte[] received_data = serial_port.read(256);
-                int bytes_read = received_data.length;
                 if (bytes_read > 0) {
                     byte_count += bytes_read;
-                    int i = 0;
-                    // Scan the buffer looking for valid packets
-                    while (i < bytes_read) {
-                                                
-                        // Attempt to decode a packet
-                        
-                        int bytes_remaining = bytes_read - i;
-                        int packet_length = decodePacketHandler(received_data,i,bytes_remaining);
-                        if (packet_length > 0) {
-                            packets_received++;
-                            update_count++;
-                            i += packet_length;
-                        } 
-                        else 
-                        {
-                            packet_length = IMUProtocol.decodeStreamResponse(received_data, i, bytes_remaining, response);
-                            if (packet_length > 0) {
-                                packets_received++;
-                                setStreamResponse(response);
-                                stream_response_received = true;
-                                i += packet_length;
-                            }
-                            else {
-                                // current index is not the start of a valid packet; increment
-                                i++;
-                            }
-                        }
-                    }
+                    packet_reader.commit(bytes_read);
+                    int packets_received = packet_reader.process(packet_handler);
                 
-                    if ( ( packets_received == 0 ) && ( bytes_read == 256 ) ) {
+                    if ( ( packets_received == 0 ) && ( bytes_read == SerialTransport.MAX_READ_LENGTH ) ) {
                         // Workaround for issue found in Java SerialPort implementation:
                         // No packets received and 256 bytes received; this
                         // condition occurs in the Java SerialPort.  In this case,
                         // reset the serial port.
-                        serial_port.reset();
+                        transport.reset();
+                        packet_reader.clear();
                     }
+                }
                     
-                    // If a stream configuration response has not been received within three seconds
-                    // of operation, (re)send a stream configuration request
-                    
-                    if ( !stream_response_received && ((Timer.getFPGATimestamp() - last_stream_command_sent_timestamp ) > 3.0 ) ) {
-                        cmd_packet_length = IMUProtocol.encodeStreamCommand( stream_command, update_type, update_rate_hz ); 
-                        try {
-                            last_stream_command_sent_timestamp = Timer.getFPGATimestamp();
-                            serial_port.write( stream_command, cmd_packet_length );
-                            serial_port.flush();
-                        } catch (RuntimeException ex2) {
-                        	ex2.printStackTrace();
-                        }                                                    
-                    }
-                    else {                        
-                        // If no bytes remain in the buffer, and not awaiting a response, sleep a bit
-                        if ( stream_response_received && ( serial_port.getBytesReceived() == 0 ) ) {
-                            Timer.delay(1.0/update_rate_hz);
-                        }        
-                    }
+                // If a stream configuration response has not been received within three seconds
+                // of operation, (re)send a stream configuration request
+                
+                if ( !stream_response_received && ((getTimestamp() - last_stream_command_sent_timestamp ) > 3.0 ) ) {
+                    cmd_packet_length = IMUProtocol.encodeStreamCommand( stream_command, update_type, update_rate_hz ); 
+                    try {
+                        last_stream_command_sent_timestamp = getTimestamp();
+                        transport.write( stream_command, cmd_packet_length );
+                    } catch (RuntimeException ex2) {
+                    	ex2.printStackTrace();
+                    }                                                    
                 }
             } catch (RuntimeException ex) {
                 // This exception typically indicates a Timeout
@@ -9,9 +9,14 @@
 /*----------------------------------------------------------------------------*/
 
 package com.kauailabs.nav6.frc;
-import java.util.Arrays;
 
+import com.kauailabs.nav6.IMUPacketReader;
 import com.kauailabs.nav6.IMUProtocol;
+import com.kauailabs.nav6.IMUTransport;
+import com.kauailabs.nav6.MotionDetector;
+import com.kauailabs.nav6.MotionKernel;
+import com.kauailabs.nav6.YawDriftEstimator;
+import com.milkenknights.common.ControlLoop;
 
 import edu.wpi.first.wpilibj.SerialPort;
 
@@ -27,15 +32,29 @@ import edu.wpi.first.wpilibj.SerialPort;
  */public class IMUAdvanced extends IMU {
 
     private IMUProtocol.QuaternionUpdate quaternion_update_data;    
+    private MotionKernel motion_kernel;
     volatile float world_linear_accel_x;
     volatile float world_linear_accel_y;
     volatile float world_linear_accel_z;
     volatile float temp_c;
-    float world_linear_accel_history[];
-    int   next_world_linear_accel_history_index;
-    float world_linear_acceleration_recent_avg;
-    
-    static final int WORLD_LINEAR_ACCEL_HISTORY_LENGTH = 10;
+    private MotionDetector motion_detector;
+    private volatile MotionDetector pending_motion_detector;
+    volatile float world_linear_acceleration_recent_avg;
+    volatile boolean moving;
+    volatile double stationary_time;
+    private YawDriftEstimator yaw_drift_estimator;
+    volatile boolean correct_yaw_drift;
+    volatile float yaw_drift_rate;
+    volatile float yaw_drift_confidence;
+    volatile double motion_timestamp;
+    volatile int motion_update_count;
+
+    // Sequence number guarding the motion state, which is published the
+    // same way as the orientation (see IMU.setOrientation()): it is odd
+    // while the reader thread is writing an update, so that getMotion()
+    // always sees values from a single packet without either thread
+    // blocking.
+    private volatile int motion_sequence = 0;
 
     /**
      * Constructs the IMUAdvanced class, overriding the default update rate
@@ -50,9 +69,39 @@ import edu.wpi.first.wpilibj.SerialPort;
      * @param update_rate_hz Custom Update Rate (Hz)
      */
     public IMUAdvanced(SerialPort serial_port, byte update_rate_hz) {
-        super(serial_port,update_rate_hz);
-        quaternion_update_data = new IMUProtocol.QuaternionUpdate();
-        update_type = IMUProtocol.MSGID_QUATERNION_UPDATE;
+        this(new SerialTransport(serial_port),update_rate_hz);
+    }
+    
+    /**
+     * Constructs the IMUAdvanced class, reading from any transport
+     * rather than a serial port.
+     * @param transport IMUTransport to read from
+     * @param update_rate_hz Custom Update Rate (Hz)
+     */
+    public IMUAdvanced(IMUTransport transport, byte update_rate_hz) {
+        this(transport, update_rate_hz, FPGA_CLOCK);
+    }
+    
+    /**
+     * Constructs the IMUAdvanced class, reading from any transport and
+     * timestamping updates with any clock rather than the FPGA's,
+     * e.g. when replaying a recording off the robot.
+     * @param transport IMUTransport to read from
+     * @param update_rate_hz Custom Update Rate (Hz)
+     * @param clock Clock to timestamp updates with
+     */
+    public IMUAdvanced(IMUTransport transport, byte update_rate_hz, ControlLoop.Clock clock) {
+        super(transport,update_rate_hz,IMUProtocol.MSGID_QUATERNION_UPDATE,new IMUPacketReader(),
+                clock);
+    }
+    
+    /**
+     * Constructs the IMUAdvanced class, reading from any transport and
+     * using the default update rate.
+     * @param transport IMUTransport to read from
+     */
+    public IMUAdvanced(IMUTransport transport) {
+        this(transport, DEFAULT_UPDATE_RATE_HZ);
     }
     
     /**
@@ -127,13 +176,107 @@ import edu.wpi.first.wpilibj.SerialPort;
     /**
      * Indicates if the nav6 IMU is currently detection motion,
      * based upon the x and y-axis world linear acceleration values.
-     * If the sum of the absolute values of the x and y axis exceed,
-     * 0.01g, the motion state is indicated.
+     * If the recent average of the sum of the absolute values of the x
+     * and y axis exceeds 0.01g, the motion state is indicated, and it
+     * stays indicated until the average drops below 0.008g.  (These are
+     * the defaults, see setMotionDetector().)
      * @return Returns true if the nav6 IMU is currently detecting motion.
      */
     public boolean isMoving()
     {
-        return (getAverageFromWorldLinearAccelHistory() >= 0.01);
+        return this.moving;
+    }
+
+    /**
+     * Returns how long the nav6 IMU has been stationary (i.e., how long
+     * isMoving() has been false), as of the latest update.
+     * 
+     * This is useful for waiting until the robot has settled, e.g. before
+     * zeroing the yaw or starting a pivot.
+     * @return The time (in seconds) since motion stopped, or 0 if moving.
+     */
+    public double getStationaryTime()
+    {
+        return this.stationary_time;
+    }
+
+    /**
+     * Enables or disables yaw drift correction.
+     * 
+     * Whether or not correction is enabled, the rate at which the yaw
+     * drifts is learned whenever the nav6 IMU is stationary (see
+     * isMoving()).  While correction is enabled, the drift accumulated at
+     * that rate is removed from the yaw, so the heading stays accurate
+     * long after zeroYaw() was called.  Correction is disabled by
+     * default.
+     * @param enabled true to remove the estimated drift from the yaw.
+     */
+    public void setYawDriftCorrectionEnabled(boolean enabled)
+    {
+        this.correct_yaw_drift = enabled;
+    }
+
+    /**
+     * Returns the rate at which the yaw has been found to drift while the
+     * nav6 IMU is stationary.
+     * @return The yaw drift rate (in degrees per second).
+     */
+    public float getYawDriftRate()
+    {
+        return this.yaw_drift_rate;
+    }
+
+    /**
+     * Returns how much stationary time the yaw drift rate estimate is
+     * based on, from 0 (none yet) to 1 (at least 30 seconds).
+     * @return The confidence in the yaw drift rate, from 0 to 1.
+     */
+    public float getYawDriftConfidence()
+    {
+        return this.yaw_drift_confidence;
+    }
+
+    /**
+     * Replaces the motion detector, e.g. to change its window length or
+     * thresholds.  The new detector takes effect from the next update,
+     * and starts out stationary.
+     * @param detector The new motion detector.  It must not be used by
+     * anything else afterwards.
+     */
+    public void setMotionDetector(MotionDetector detector)
+    {
+        detector.reset();
+        this.pending_motion_detector = detector;
+    }
+
+    /**
+     * Copies the latest motion state (world linear acceleration, its
+     * recent average, and temperature) into a snapshot.  The values are
+     * guaranteed to come from the same update, and this never blocks the
+     * thread reading the nav6 IMU.
+     * @param motion Receives the motion state.
+     */
+    public void getMotion(IMUMotion motion) {
+        int sequence;
+        do {
+            sequence = motion_sequence;
+            if ((sequence & 1) != 0) {
+                // an update is being written; let the reader thread finish
+                Thread.yield();
+                continue;
+            }
+            motion.world_linear_accel_x = this.world_linear_accel_x;
+            motion.world_linear_accel_y = this.world_linear_accel_y;
+            motion.world_linear_accel_z = this.world_linear_accel_z;
+            motion.average_linear_accel = this.world_linear_acceleration_recent_avg;
+            motion.moving = this.moving;
+            motion.stationary_time = this.stationary_time;
+            motion.yaw_drift_rate = this.yaw_drift_rate;
+            motion.yaw_drift_confidence = this.yaw_drift_confidence;
+            motion.temp_c = this.temp_c;
+            motion.timestamp = this.motion_timestamp;
+            motion.update_count = this.motion_update_count;
+        } while (((sequence & 1) != 0) || (sequence != motion_sequence));
     }
 
     /**
@@ -152,180 +295,82 @@ import edu.wpi.first.wpilibj.SerialPort;
     //@Override
     protected void initIMU() {
         super.initIMU();
-        world_linear_accel_history = new float[WORLD_LINEAR_ACCEL_HISTORY_LENGTH];
-        initWorldLinearAccelHistory();
-    }
-
-    private void initWorldLinearAccelHistory(){
-        Arrays.fill(world_linear_accel_history,0);
-        next_world_linear_accel_history_index = 0;
+        quaternion_update_data = new IMUProtocol.QuaternionUpdate();
+        motion_kernel = new MotionKernel();
+        motion_detector = new MotionDetector();
+        yaw_drift_estimator = new YawDriftEstimator();
         world_linear_acceleration_recent_avg = (float) 0.0;
     }
-    
-    private void updateWorldLinearAccelHistory( float x, float y, float z ){
-        if (next_world_linear_accel_history_index >= WORLD_LINEAR_ACCEL_HISTORY_LENGTH) {
-            next_world_linear_accel_history_index = 0;
-        }
-        world_linear_accel_history[next_world_linear_accel_history_index] = Math.abs(x) + Math.abs(y);
-        next_world_linear_accel_history_index++;
-    }
-    
+
+    /**
+     * Returns the average of the x and y-axis world linear acceleration
+     * magnitude over the last few updates.  The average is kept up to
+     * date by the thread reading the nav6 IMU, so this only reads a
+     * field.
+     * @return The recent average acceleration (in g).
+     */
     public float getAverageFromWorldLinearAccelHistory(){
-        float world_linear_accel_history_sum = (float) 0.0;
-        for (int i = 0; i < WORLD_LINEAR_ACCEL_HISTORY_LENGTH; i++) {
-            world_linear_accel_history_sum += world_linear_accel_history[i];
-        }
-        return world_linear_accel_history_sum / WORLD_LINEAR_ACCEL_HISTORY_LENGTH;
+        return world_linear_acceleration_recent_avg;
     }
 
     private void setQuaternion(IMUProtocol.QuaternionUpdate raw_update) {
-        synchronized (this) { // synchronized block
-            
-            float[] q = new float[4];
-            float[] gravity = new float[3];
-            //float[] euler = new float[3];
-            float[] ypr = new float[3];
-            float yaw_degrees;
-            float pitch_degrees;
-            float roll_degrees;
-            float linear_acceleration_x;
-            float linear_acceleration_y;
-            float linear_acceleration_z;
-            float q2[] = new float[4];
-            float q_product[] = new float[4];
-            float world_linear_acceleration_x;
-            float world_linear_acceleration_y;
-            float world_linear_acceleration_z;
-                       
-            q[0] = ((float)raw_update.q1) / 16384.0f;
-            q[1] = ((float)raw_update.q2) / 16384.0f;
-            q[2] = ((float)raw_update.q3) / 16384.0f;
-            q[3] = ((float)raw_update.q4) / 16384.0f;
-            for (int i = 0; i < 4; i++) if (q[i] >= 2) q[i] = -4 + q[i]; // Range-check quaterions
-            
-            // below calculations are necessary for calculation of yaw/pitch/roll, 
-            // and tilt-compensated compass heading
-            
-            // calculate gravity vector
-            gravity[0] = 2 * (q[1]*q[3] - q[0]*q[2]);
-            gravity[1] = 2 * (q[0]*q[1] + q[2]*q[3]);
-            gravity[2] = q[0]*q[0] - q[1]*q[1] - q[2]*q[2] + q[3]*q[3];
-  
-            // calculate Euler angles
-            // This code is here for reference, and is commented out for performance reasons
-           
-            //euler[0] = (float) MathUtils.atan2(2*q[1]*q[2] - 2*q[0]*q[3], 2*q[0]*q[0] + 2*q[1]*q[1] - 1);
-            //euler[1] = (float) -MathUtils.asin(2*q[1]*q[3] + 2*q[0]*q[2]);
-            //euler[2] = (float) MathUtils.atan2(2*q[2]*q[3] - 2*q[0]*q[1], 2*q[0]*q[0] + 2*q[3]*q[3] - 1);
-  
-            // calculate yaw/pitch/roll angles
-            ypr[0] = (float) Math.atan2(2*q[1]*q[2] - 2*q[0]*q[3], 2*q[0]*q[0] + 2*q[1]*q[1] - 1);
-            ypr[1] = (float) Math.atan(gravity[0] / Math.sqrt(gravity[1]*gravity[1] + gravity[2]*gravity[2]));
-            ypr[2] = (float) Math.atan(gravity[1] / Math.sqrt(gravity[0]*gravity[0] + gravity[2]*gravity[2]));
-             
-            yaw_degrees = (float) (ypr[0] * (180.0/Math.PI)); 
-            pitch_degrees = (float) (ypr[1] * (180.0/Math.PI)); 
-            roll_degrees = (float) (ypr[2] * (180.0/Math.PI)); 
-             
-            // Subtract nav6 offset, and handle potential 360 degree wrap-around
-            yaw_degrees -= nav6_yaw_offset_degrees;
-            if ( yaw_degrees < -180 ) yaw_degrees += 360;
-            if ( yaw_degrees > 180 ) yaw_degrees -= 360;
-             
-            // calculate linear acceleration by 
-            // removing the gravity component (+1g = +4096 in standard DMP FIFO packet)
-             
-            linear_acceleration_x = (float) ((((float)raw_update.accel_x) / (32768.0 / accel_fsr_g)) - gravity[0]);
-            linear_acceleration_y = (float) ((((float)raw_update.accel_y) / (32768.0 / accel_fsr_g)) - gravity[1]);
-            linear_acceleration_z = (float) ((((float)raw_update.accel_z) / (32768.0 / accel_fsr_g)) - gravity[2]); 
-            
-            // Calculate world-frame acceleration
-            
-            q2[0] = 0;
-            q2[1] = linear_acceleration_x;
-            q2[2] = linear_acceleration_y;
-            q2[3] = linear_acceleration_z;
-            
-            // Rotate linear acceleration so that it's relative to the world reference frame
-            
-            // http://www.cprogramming.com/tutorial/3d/quaternions.html
-            // http://www.euclideanspace.com/maths/algebra/realNormedAlgebra/quaternions/transforms/index.htm
-            // http://content.gpwiki.org/index.php/OpenGL:Tutorials:Using_Quaternions_to_represent_rotation
-            // ^ or: http://webcache.googleusercontent.com/search?q=cache:xgJAp3bDNhQJ:content.gpwiki.org/index.php/OpenGL:Tutorials:Using_Quaternions_to_represent_rotation&hl=en&gl=us&strip=1
-        
-            // P_out = q * P_in * conj(q)
-            // - P_out is the output vector
-            // - q is the orientation quaternion
-            // - P_in is the input vector (a*aReal)
-            // - conj(q) is the conjugate of the orientation quaternion (q=[w,x,y,z], q*=[w,-x,-y,-z])
-
-            
-            // calculate quaternion product
-            // Quaternion multiplication is defined by:
-            //     (Q1 * Q2).w = (w1w2 - x1x2 - y1y2 - z1z2)
-            //     (Q1 * Q2).x = (w1x2 + x1w2 + y1z2 - z1y2)
-            //     (Q1 * Q2).y = (w1y2 - x1z2 + y1w2 + z1x2)
-            //     (Q1 * Q2).z = (w1z2 + x1y2 - y1x2 + z1w2
-            
-            q_product[0] = q[0]*q2[0] - q[1]*q2[1] - q[2]*q2[2] - q[3]*q2[3];  // new w
-            q_product[1] = q[0]*q2[1] + q[1]*q2[0] + q[2]*q2[3] - q[3]*q2[2];  // new x
-            q_product[2] = q[0]*q2[2] - q[1]*q2[3] + q[2]*q2[0] + q[3]*q2[1];  // new y 
-            q_product[3] = q[0]*q2[3] + q[1]*q2[2] - q[2]*q2[1] + q[3]*q2[0];  // new z
-
-            float[] q_conjugate = new float[4];
-            
-            q_conjugate[0] = q[0];            
-            q_conjugate[1] = -q[1];            
-            q_conjugate[2] = -q[2];            
-            q_conjugate[3] = -q[3];            
 
-            float[] q_final = new float[4];
-            
-            q_final[0] = q_product[0]*q_conjugate[0] - q_product[1]*q_conjugate[1] - q_product[2]*q_conjugate[2] - q_product[3]*q_conjugate[3];  // new w
-            q_final[1] = q_product[0]*q_conjugate[1] + q_product[1]*q_conjugate[0] + q_product[2]*q_conjugate[3] - q_product[3]*q_conjugate[2];  // new x
-            q_final[2] = q_product[0]*q_conjugate[2] - q_product[1]*q_conjugate[3] + q_product[2]*q_conjugate[0] + q_product[3]*q_conjugate[1];  // new y 
-            q_final[3] = q_product[0]*q_conjugate[3] + q_product[1]*q_conjugate[2] - q_product[2]*q_conjugate[1] + q_product[3]*q_conjugate[0];  // new z
-
-            world_linear_acceleration_x = q_final[1];
-            world_linear_acceleration_y = q_final[2];
-            world_linear_acceleration_z = q_final[3];
-             
-            updateWorldLinearAccelHistory(world_linear_acceleration_x,world_linear_acceleration_y, world_linear_acceleration_z);
-             
-            // Calculate tilt-compensated compass heading
-            
-            float inverted_pitch = -ypr[1];
-            float roll_radians = ypr[2];
-            
-            float cos_roll = (float) Math.cos(roll_radians);
-            float sin_roll = (float) Math.sin(roll_radians);
-            float cos_pitch = (float) Math.cos(inverted_pitch);
-            float sin_pitch = (float) Math.sin(inverted_pitch);
-            
-            float MAG_X = raw_update.mag_x * cos_pitch + raw_update.mag_z * sin_pitch;
-            float MAG_Y = raw_update.mag_x * sin_roll * sin_pitch + raw_update.mag_y * cos_roll - raw_update.mag_z * sin_roll * cos_pitch;
-            float tilt_compensated_heading_radians = (float) Math.atan2(MAG_Y,MAG_X);
-            float tilt_compensated_heading_degrees = (float) (tilt_compensated_heading_radians * (180.0 / Math.PI));
-            
-            // Adjust compass for board orientation,
-            // and modify range from -180-180 to
-            // 0-360 degrees
-          
-            tilt_compensated_heading_degrees -= 90.0;
-            if ( tilt_compensated_heading_degrees < 0 ) {
-              tilt_compensated_heading_degrees += 360; 
-            }
-            
-            this.yaw = yaw_degrees;
-            this.pitch = pitch_degrees;
-            this.roll = roll_degrees;
-            this.compass_heading = tilt_compensated_heading_degrees;
-            
-            this.world_linear_accel_x = world_linear_acceleration_x;
-            this.world_linear_accel_y = world_linear_acceleration_y;
-            this.world_linear_accel_z = world_linear_acceleration_z;
-            this.temp_c = raw_update.temp_c;
-            updateYawHistory(this.yaw);            
+        double timestamp = getTimestamp();
+        
+        // calculate the gravity vector and yaw/pitch/roll angles, which
+        // are also needed for the tilt-compensated compass heading
+        
+        motion_kernel.setQuaternion(raw_update.q1, raw_update.q2, raw_update.q3, raw_update.q4);
+         
+        float yaw_degrees = (float) (motion_kernel.yaw * (180.0/Math.PI)); 
+        float pitch_degrees = (float) (motion_kernel.pitch * (180.0/Math.PI)); 
+        float roll_degrees = (float) (motion_kernel.roll * (180.0/Math.PI)); 
+         
+        // Subtract nav6 offset, and handle potential 360 degree wrap-around
+        yaw_degrees -= nav6_yaw_offset_degrees;
+        if ( yaw_degrees < -180 ) yaw_degrees += 360;
+        if ( yaw_degrees > 180 ) yaw_degrees -= 360;
+         
+        // calculate linear acceleration by removing the gravity
+        // component, and rotate it into the world reference frame
+         
+        motion_kernel.removeGravity(raw_update.accel_x, raw_update.accel_y, raw_update.accel_z, accel_fsr_g);
+        
+        MotionDetector new_detector = pending_motion_detector;
+        if (new_detector != null) {
+            pending_motion_detector = null;
+            motion_detector = new_detector;
         }
+        motion_detector.add(Math.abs(motion_kernel.world_linear_accel_x)
+                + Math.abs(motion_kernel.world_linear_accel_y), timestamp);
+        
+        // learn the drift rate from the uncorrected yaw, then remove the
+        // drift accumulated so far
+        
+        yaw_drift_estimator.update(yaw_degrees, !motion_detector.isMoving(), timestamp,
+                correct_yaw_drift);
+        yaw_degrees -= yaw_drift_estimator.getCorrection();
+        if ( yaw_degrees < -180 ) yaw_degrees += 360;
+        if ( yaw_degrees > 180 ) yaw_degrees -= 360;
+         
+        motion_kernel.setTiltCompensatedHeading(raw_update.mag_x, raw_update.mag_y, raw_update.mag_z);
+        
+        setOrientation(yaw_degrees, pitch_degrees, roll_degrees, motion_kernel.compass_heading, timestamp);
+        
+        // publish the motion state with the same timestamp as the orientation
+        int sequence = motion_sequence;
+        motion_sequence = sequence + 1;
+        this.world_linear_accel_x = motion_kernel.world_linear_accel_x;
+        this.world_linear_accel_y = motion_kernel.world_linear_accel_y;
+        this.world_linear_accel_z = motion_kernel.world_linear_accel_z;
+        this.world_linear_acceleration_recent_avg = motion_detector.getAverage();
+        this.moving = motion_detector.isMoving();
+        this.stationary_time = motion_detector.getStationaryTime();
+        this.yaw_drift_rate = yaw_drift_estimator.getDriftRate();
+        this.yaw_drift_confidence = yaw_drift_estimator.getConfidence();
+        this.temp_c = raw_update.temp_c;
+        this.motion_timestamp = timestamp;
+        this.motion_update_count++;
+        motion_sequence = sequence + 2;
     }
 }
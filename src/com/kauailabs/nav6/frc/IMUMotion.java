@@ -0,0 +1,44 @@
+/*----------------------------------------------------------------------------*/
+/* Copyright (c) Kauai Labs 2013. All Rights Reserved.                        */
+/*                                                                            */
+/* Created in support of Team 2465 (Kauaibots).  Go Thunderchicken!           */
+/*                                                                            */
+/* Open Source Software - may be modified and shared by FRC teams. Any        */
+/* modifications to this code must be accompanied by the nav6_License.txt file*/ 
+/* in the root directory of the project.                                      */
+/*----------------------------------------------------------------------------*/
+
+package com.kauailabs.nav6.frc;
+
+/**
+ * A consistent snapshot of the motion state worked out by IMUAdvanced.
+ * All of the values come from the same quaternion update packet.
+ * 
+ * Snapshots are filled in by IMUAdvanced.getMotion(), so one object can
+ * be allocated up front and reused every loop.
+ */
+public class IMUMotion {
+
+    /** World-frame linear acceleration in the x-axis (in g). */
+    public float world_linear_accel_x;
+    /** World-frame linear acceleration in the y-axis (in g). */
+    public float world_linear_accel_y;
+    /** World-frame linear acceleration in the z-axis (in g). */
+    public float world_linear_accel_z;
+    /** Recent average of the x and y-axis acceleration magnitude (in g). */
+    public float average_linear_accel;
+    /** Whether the IMU is moving (see IMUAdvanced.isMoving()). */
+    public boolean moving;
+    /** Time (in seconds) the IMU had been stationary, or 0 if moving. */
+    public double stationary_time;
+    /** Estimated yaw drift rate (in degrees per second). */
+    public float yaw_drift_rate;
+    /** Confidence in the yaw drift rate, from 0 to 1. */
+    public float yaw_drift_confidence;
+    /** Temperature (in degrees centigrade). */
+    public float temp_c;
+    /** FPGA timestamp (in seconds) at which the update was received. */
+    public double timestamp;
+    /** The number of quaternion updates received up to and including this one. */
+    public int update_count;
+}
@@ -0,0 +1,34 @@
+/*----------------------------------------------------------------------------*/
+/* Copyright (c) Kauai Labs 2013. All Rights Reserved.                        */
+/*                                                                            */
+/* Created in support of Team 2465 (Kauaibots).  Go Thunderchicken!           */
+/*                                                                            */
+/* Open Source Software - may be modified and shared by FRC teams. Any        */
+/* modifications to this code must be accompanied by the nav6_License.txt file*/ 
+/* in the root directory of the project.                                      */
+/*----------------------------------------------------------------------------*/
+
+package com.kauailabs.nav6.frc;
+
+/**
+ * A consistent snapshot of the orientation reported by the nav6 IMU.  All
+ * of the values come from the same update packet.
+ * 
+ * Snapshots are filled in by IMU.getOrientation(), so one object can be
+ * allocated up front and reused every loop.
+ */
+public class IMUOrientation {
+
+    /** Yaw in degrees (-180 to 180), with the user yaw offset applied. */
+    public float yaw;
+    /** Pitch in degrees (-180 to 180). */
+    public float pitch;
+    /** Roll in degrees (-180 to 180). */
+    public float roll;
+    /** Tilt-compensated compass heading in degrees (0 to 360). */
+    public float compass_heading;
+    /** FPGA timestamp (in seconds) at which the update was received. */
+    public double timestamp;
+    /** The number of updates received up to and including this one. */
+    public int update_count;
+}
@@ -0,0 +1,136 @@
+/*----------------------------------------------------------------------------*/
+/* Copyright (c) Kauai Labs 2013. All Rights Reserved.                        */
+/*                                                                            */
+/* Created in support of Team 2465 (Kauaibots).  Go Thunderchicken!           */
+/*                                                                            */
+/* Open Source Software - may be modified and shared by FRC teams. Any        */
+/* modifications to this code must be accompanied by the nav6_License.txt file*/
+/* in the root directory of the project.                                      */
+/*----------------------------------------------------------------------------*/
+
+package com.kauailabs.nav6.frc;
+
+import java.io.IOException;
+
+import com.kauailabs.nav6.ReplayFileTransport;
+import com.kauailabs.navx_mxp.AHRS;
+import com.milkenknights.common.ControlLoop;
+
+/**
+ * Decodes bytes recorded from a nav6 or navX-MXP serial port and prints
+ * every orientation update in them, using the same IMU classes as the
+ * robot does.
+ *
+ * Usage:
+ * <pre>
+ * java com.kauailabs.nav6.frc.IMUReplay [--advanced | --ahrs] [--baud N] [--paced] FILE
+ * </pre>
+ * --advanced decodes quaternion updates with IMUAdvanced, and --ahrs
+ * decodes navX-MXP updates with AHRS; otherwise yaw/pitch/roll updates
+ * are decoded with IMU.  Each line holds the time at which the update's
+ * last byte would have arrived at the baud rate (57600 unless given),
+ * then yaw, pitch, roll and compass heading in degrees.  With --paced,
+ * the file is played back in real time instead of as fast as possible.
+ */
+public class IMUReplay {
+
+    static final int DEFAULT_BAUD_RATE = 57600;
+
+    static final int TYPE_IMU = 0;
+    static final int TYPE_ADVANCED = 1;
+    static final int TYPE_AHRS = 2;
+
+    static void printSample(float yaw, float pitch, float roll, float compass_heading,
+            double timestamp) {
+        System.out.println(String.format("%.4f %.2f %.2f %.2f %.2f",
+                timestamp, yaw, pitch, roll, compass_heading));
+    }
+
+    /**
+     * Constructs an IMU of the given type which prints each update.  The
+     * IMU starts reading from the transport straight away.
+     * @param type TYPE_IMU, TYPE_ADVANCED or TYPE_AHRS
+     * @param transport Transport to read from
+     * @param clock Clock to timestamp updates with
+     * @return The IMU
+     */
+    static IMU createIMU(int type, ReplayFileTransport transport, ControlLoop.Clock clock) {
+        if (type == TYPE_ADVANCED) {
+            return new IMUAdvanced(transport, IMU.DEFAULT_UPDATE_RATE_HZ, clock) {
+                protected void setOrientation(float yaw, float pitch, float roll,
+                        float compass_heading, double timestamp) {
+                    super.setOrientation(yaw, pitch, roll, compass_heading, timestamp);
+                    printSample(yaw, pitch, roll, compass_heading, timestamp);
+                }
+            };
+        } else if (type == TYPE_AHRS) {
+            return new AHRS(transport, IMU.DEFAULT_UPDATE_RATE_HZ, clock) {
+                protected void setOrientation(float yaw, float pitch, float roll,
+                        float compass_heading, double timestamp) {
+                    super.setOrientation(yaw, pitch, roll, compass_heading, timestamp);
+                    printSample(yaw, pitch, roll, compass_heading, timestamp);
+                }
+            };
+        }
+        return new IMU(transport, IMU.DEFAULT_UPDATE_RATE_HZ, clock) {
+            protected void setOrientation(float yaw, float pitch, float roll,
+                    float compass_heading, double timestamp) {
+                super.setOrientation(yaw, pitch, roll, compass_heading, timestamp);
+                printSample(yaw, pitch, roll, compass_heading, timestamp);
+            }
+        };
+    }
+
+    private static void usage() {
+        System.err.println("Usage: IMUReplay [--advanced | --ahrs] [--baud N] [--paced] FILE");
+        System.exit(2);
+    }
+
+    public static void main(String[] args) {
+        int type = TYPE_IMU;
+        int baud_rate = DEFAULT_BAUD_RATE;
+        boolean paced = false;
+        String file_name = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--advanced")) {
+                type = TYPE_ADVANCED;
+            } else if (args[i].equals("--ahrs")) {
+                type = TYPE_AHRS;
+            } else if (args[i].equals("--paced")) {
+                paced = true;
+            } else if (args[i].equals("--baud") && i + 1 < args.length) {
+                try {
+                    baud_rate = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException ex) {
+                    usage();
+                }
+            } else if (file_name == null && !args[i].startsWith("--")) {
+                file_name = args[i];
+            } else {
+                usage();
+            }
+        }
+        if (file_name == null) {
+            usage();
+        }
+
+        ReplayFileTransport transport;
+        try {
+            transport = new ReplayFileTransport(file_name, baud_rate, paced);
+        } catch (IOException ex) {
+            System.err.println(file_name + ": " + ex.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        IMU imu = createIMU(type, transport, transport.getClock());
+        // the IMU's thread stops once the whole file has been read
+        try {
+            imu.m_thread.join();
+        } catch (InterruptedException ex) {
+            return;
+        }
+        System.err.println((long) imu.getByteCount() + " bytes, "
+                + (long) imu.getUpdateCount() + " updates");
+    }
+}
@@ -0,0 +1,75 @@
+/*----------------------------------------------------------------------------*/
+/* Copyright (c) Kauai Labs 2013. All Rights Reserved.                        */
+/*                                                                            */
+/* Created in support of Team 2465 (Kauaibots).  Go Thunderchicken!           */
+/*                                                                            */
+/* Open Source Software - may be modified and shared by FRC teams. Any        */
+/* modifications to this code must be accompanied by the nav6_License.txt file*/ 
+/* in the root directory of the project.                                      */
+/*----------------------------------------------------------------------------*/
+
+package com.kauailabs.nav6.frc;
+
+import com.kauailabs.nav6.IMUProtocol;
+import com.kauailabs.nav6.IMUTransport;
+
+import edu.wpi.first.wpilibj.SerialPort;
+
+/**
+ * An IMUTransport over a WPILib SerialPort.
+ * 
+ * The port is set up to end each read at the '\n' which terminates every
+ * nav6 packet, so a read blocks until a whole packet has arrived (or the
+ * timeout expires) and returns it straight away, without any polling.
+ */
+public class SerialTransport implements IMUTransport {
+
+    static final int    READ_BUFFER_SIZE    = 512;
+    static final double TIMEOUT_SECONDS     = 1.0;
+    
+    /**
+     * The most bytes to ask the SerialPort for in one read.  The Java
+     * SerialPort sometimes gets into a state where every read returns this
+     * many bytes of garbage; the IMU resets the transport when that happens.
+     */
+    public static final int MAX_READ_LENGTH = 256;
+    
+    SerialPort serial_port;
+
+    /**
+     * Constructs the transport and configures the serial port for the nav6.
+     * @param serial_port The port the nav6 is connected to
+     */
+    public SerialTransport(SerialPort serial_port) {
+        this.serial_port = serial_port;
+        
+        // The nav6 IMU serial port configuration is 8 data bits, no parity, one stop bit. 
+        // No flow control is used.
+        // Conveniently, these are the defaults used by the WPILib's SerialPort class.
+        try {
+            serial_port.setReadBufferSize(READ_BUFFER_SIZE);
+            serial_port.setTimeout(TIMEOUT_SECONDS);
+            serial_port.enableTermination((char)IMUProtocol.STREAM_MSG_TERMINATION_CHAR);
+            serial_port.reset();
+        } catch (RuntimeException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    public int read(byte[] buffer, int offset, int length) {
+        // SerialPort.read() allocates the array it returns, so the bytes
+        // have to be copied out of it
+        byte[] received_data = serial_port.read(Math.min(length, MAX_READ_LENGTH));
+        System.arraycopy(received_data, 0, buffer, offset, received_data.length);
+        return received_data.length;
+    }
+
+    public void write(byte[] buffer, int length) {
+        serial_port.write(buffer, length);
+        serial_port.flush();
+    }
+
+    public void reset() {
+        serial_port.reset();
+    }
+}
@@ -0,0 +1,159 @@
+/*----------------------------------------------------------------------------*/
+/* Copyright (c) Kauai Labs 2013. All Rights Reserved.                        */
+/*                                                                            */
+/* Created in support of Team 2465 (Kauaibots).  Go Thunderchicken!           */
+/*                                                                            */
+/* Open Source Software - may be modified and shared by FRC teams. Any        */
+/* modifications to this code must be accompanied by the nav6_License.txt file*/ 
+/* in the root directory of the project.                                      */
+/*----------------------------------------------------------------------------*/
+
+package com.kauailabs.nav6.frc;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size ring of timestamped yaw samples, used to look up what the
+ * yaw was at a given moment in the recent past.
+ * 
+ * Samples are added by the thread receiving data from the nav6 IMU, and
+ * can be read from any thread without locking.  If a reader is overtaken
+ * by the writer wrapping around the ring, it simply tries again.  Nothing
+ * is allocated after construction.
+ */
+class YawHistory {
+
+    private final int capacity;
+    // timestamps are stored as Double.doubleToRawLongBits(), and yaws as
+    // Float.floatToRawIntBits()
+    private final AtomicLongArray timestamps;
+    private final AtomicIntegerArray yaws;
+    // the number of samples ever added; only written by the writer thread
+    private volatile long sample_count;
+
+    YawHistory(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2");
+        }
+        this.capacity = capacity;
+        timestamps = new AtomicLongArray(capacity);
+        yaws = new AtomicIntegerArray(capacity);
+    }
+
+    /**
+     * Adds a sample.  Samples must be added in timestamp order, by one
+     * thread.
+     * @param timestamp FPGA timestamp of the sample, in seconds
+     * @param yaw Yaw in degrees (-180 to 180)
+     */
+    void add(double timestamp, float yaw) {
+        long n = sample_count;
+        int slot = (int) (n % capacity);
+        timestamps.lazySet(slot, Double.doubleToRawLongBits(timestamp));
+        yaws.lazySet(slot, Float.floatToRawIntBits(yaw));
+        // publishing the count makes the sample visible to readers
+        sample_count = n + 1;
+    }
+
+    private double timestamp(long n) {
+        return Double.longBitsToDouble(timestamps.get((int) (n % capacity)));
+    }
+
+    private float yaw(long n) {
+        return Float.intBitsToFloat(yaws.get((int) (n % capacity)));
+    }
+
+    /**
+     * Returns true if sample n can't have been overwritten yet.  The writer
+     * may be part way through overwriting the slot of sample
+     * sample_count - capacity.
+     */
+    private boolean isIntact(long n) {
+        return n > sample_count - capacity;
+    }
+
+    /**
+     * Returns the yaw at a moment in the past, interpolated between the
+     * samples on either side of it.  Times before the oldest sample give
+     * the oldest sample, and times after the newest sample give the newest
+     * sample.
+     * @param timestamp FPGA timestamp, in seconds
+     * @return Yaw in degrees (-180 to 180), or NaN if there are no samples.
+     */
+    float getYawAt(double timestamp) {
+        while (true) {
+            long newest = sample_count - 1;
+            if (newest < 0) {
+                return Float.NaN;
+            }
+            long oldest = Math.max(0, newest - capacity + 2);
+
+            // find the oldest sample taken after the timestamp
+            long n = newest;
+            while (n >= oldest && timestamp(n) > timestamp) {
+                n--;
+            }
+
+            float result;
+            if (n == newest) {
+                result = yaw(newest);
+            } else if (n < oldest) {
+                result = yaw(oldest);
+            } else {
+                double t0 = timestamp(n);
+                double t1 = timestamp(n + 1);
+                float y0 = yaw(n);
+                float y1 = yaw(n + 1);
+                float fraction = t1 > t0 ? (float) ((timestamp - t0) / (t1 - t0)) : 1;
+                result = wrapDegrees(y0 + wrapDegrees(y1 - y0) * fraction);
+            }
+
+            if (isIntact(Math.max(n, oldest))) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Returns the average of the most recent yaw samples.  The average is
+     * taken around the newest sample, so samples either side of the
+     * +/-180 degree boundary average correctly.
+     * @param count The number of samples to average
+     * @return Average yaw in degrees (-180 to 180), or 0 if there are no
+     * samples.
+     */
+    float getAverageYaw(int count) {
+        while (true) {
+            long newest = sample_count - 1;
+            if (newest < 0) {
+                return 0;
+            }
+            long oldest = Math.max(0, newest - Math.min(count, capacity - 1) + 1);
+
+            float reference = yaw(newest);
+            double offset_sum = 0.0;
+            for (long n = oldest; n <= newest; n++) {
+                offset_sum += wrapDegrees(yaw(n) - reference);
+            }
+            float average = wrapDegrees((float) (reference + offset_sum / (newest - oldest + 1)));
+
+            if (isIntact(oldest)) {
+                return average;
+            }
+        }
+    }
+
+    /**
+     * Wraps an angle in degrees into the range -180 to 180.
+     */
+    static float wrapDegrees(float degrees) {
+        while (degrees < -180) {
+            degrees += 360;
+        }
+        while (degrees > 180) {
+            degrees -= 360;
+        }
+        return degrees;
+    }
+}
@@ -0,0 +1,230 @@
+/* ============================================
+ NavX-MXP source code is placed under the MIT license
+ Copyright (c) 2015 Kauai Labs
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===============================================
+ */
+
+package com.kauailabs.navx_mxp;
+
+import com.kauailabs.nav6.IMUTransport;
+import com.kauailabs.nav6.frc.IMU;
+import com.kauailabs.nav6.frc.SerialTransport;
+import com.milkenknights.common.ControlLoop;
+
+import edu.wpi.first.wpilibj.SerialPort;
+
+/**
+ * The AHRS class provides an interface to the KauaiLabs navX-MXP, using
+ * its binary AHRS update stream rather than the nav6 ASCII protocol.
+ * 
+ * Each AHRS update carries the navX-MXP's own sensor fusion results:
+ * yaw, pitch, roll, compass heading and 9-axis fused heading, world
+ * linear acceleration with gravity removed, and barometric altitude.
+ * These are decoded straight from the packet, without allocating, and
+ * without the host-side quaternion math done by IMUAdvanced.
+ * 
+ * The orientation is published through the same interface as the IMU
+ * class (getYaw(), getOrientation(), getYawAt() etc.), so an AHRS can be
+ * used anywhere an IMU is.
+ */
+public class AHRS extends IMU {
+
+    private AHRSProtocol.AHRSUpdate ahrs_update_data;
+    volatile float fused_heading;
+    volatile float world_linear_accel_x;
+    volatile float world_linear_accel_y;
+    volatile float world_linear_accel_z;
+    volatile float altitude;
+    volatile float baro_pressure;
+    volatile float mpu_temp_c;
+    volatile byte  op_status;
+    volatile byte  sensor_status;
+    volatile byte  cal_status;
+
+    /**
+     * Constructs the AHRS class, overriding the default update rate
+     * with a custom rate which may be from 4 to 100, representing
+     * the number of updates per second sent by the navX-MXP.
+     * @param serial_port SerialPort the navX-MXP is connected to
+     * @param update_rate_hz Custom Update Rate (Hz)
+     */
+    public AHRS(SerialPort serial_port, byte update_rate_hz) {
+        this(new SerialTransport(serial_port), update_rate_hz);
+    }
+
+    /**
+     * Constructs the AHRS class, using the default update rate.
+     * @param serial_port SerialPort the navX-MXP is connected to
+     */
+    public AHRS(SerialPort serial_port) {
+        this(serial_port, DEFAULT_UPDATE_RATE_HZ);
+    }
+
+    /**
+     * Constructs the AHRS class, reading from any transport rather than
+     * a serial port.
+     * @param transport IMUTransport to read from
+     * @param update_rate_hz Custom Update Rate (Hz)
+     */
+    public AHRS(IMUTransport transport, byte update_rate_hz) {
+        this(transport, update_rate_hz, FPGA_CLOCK);
+    }
+
+    /**
+     * Constructs the AHRS class, reading from any transport and
+     * timestamping updates with any clock rather than the FPGA's,
+     * e.g. when replaying a recording off the robot.
+     * @param transport IMUTransport to read from
+     * @param update_rate_hz Custom Update Rate (Hz)
+     * @param clock Clock to timestamp updates with
+     */
+    public AHRS(IMUTransport transport, byte update_rate_hz, ControlLoop.Clock clock) {
+        super(transport, update_rate_hz, AHRSProtocol.MSGID_AHRS_UPDATE,
+                new AHRSPacketReader(), clock);
+    }
+
+    /**
+     * Constructs the AHRS class, reading from any transport (e.g. a
+     * RegisterTransport over I2C or SPI) and using the default update
+     * rate.
+     * @param transport IMUTransport to read from
+     */
+    public AHRS(IMUTransport transport) {
+        this(transport, DEFAULT_UPDATE_RATE_HZ);
+    }
+
+    protected void initIMU() {
+        super.initIMU();
+        ahrs_update_data = new AHRSProtocol.AHRSUpdate();
+    }
+
+    protected int decodePacketHandler(byte[] received_data, int offset, int bytes_remaining) {
+
+        int packet_length = AHRSProtocol.decodeAHRSUpdate(received_data, offset, bytes_remaining, ahrs_update_data);
+        if (packet_length > 0) {
+            setAHRSUpdate(ahrs_update_data);
+        }
+        return packet_length;
+    }
+
+    private void setAHRSUpdate(AHRSProtocol.AHRSUpdate update) {
+        fused_heading = update.fused_heading;
+        world_linear_accel_x = update.linear_accel_x;
+        world_linear_accel_y = update.linear_accel_y;
+        world_linear_accel_z = update.linear_accel_z;
+        altitude = update.altitude;
+        baro_pressure = update.barometric_pressure;
+        mpu_temp_c = update.mpu_temp;
+        op_status = update.op_status;
+        sensor_status = update.sensor_status;
+        cal_status = update.cal_status;
+        setOrientation(update.yaw, update.pitch, update.roll, update.compass_heading);
+    }
+
+    /**
+     * Returns the 9-axis fused heading (in degrees, from 0 to 360), which
+     * combines the gyro/accelerometer yaw with the magnetometer heading
+     * when the magnetometer is calibrated and undisturbed.
+     * @return The fused heading in degrees (0 to 360).
+     */
+    public float getFusedHeading() {
+        return fused_heading;
+    }
+
+    /**
+     * Returns the current linear acceleration in the x-axis (in g), with
+     * gravity removed and rotated into the same reference frame as the
+     * yaw.
+     * @return Current world linear acceleration in the x-axis (in g).
+     */
+    public float getWorldLinearAccelX() {
+        return world_linear_accel_x;
+    }
+
+    /**
+     * Returns the current linear acceleration in the y-axis (in g), with
+     * gravity removed and rotated into the same reference frame as the
+     * yaw.
+     * @return Current world linear acceleration in the y-axis (in g).
+     */
+    public float getWorldLinearAccelY() {
+        return world_linear_accel_y;
+    }
+
+    /**
+     * Returns the current linear acceleration in the z-axis (in g), with
+     * gravity removed.
+     * @return Current world linear acceleration in the z-axis (in g).
+     */
+    public float getWorldLinearAccelZ() {
+        return world_linear_accel_z;
+    }
+
+    /**
+     * Returns the altitude (in meters) worked out from the barometric
+     * pressure.  This is only meaningful on boards with a pressure sensor.
+     * @return The current altitude in meters.
+     */
+    public float getAltitude() {
+        return altitude;
+    }
+
+    /**
+     * Returns the barometric pressure (in millibar).
+     * @return The current barometric pressure in millibar.
+     */
+    public float getBarometricPressure() {
+        return baro_pressure;
+    }
+
+    /**
+     * Returns the current temperature (in degrees centigrade) reported by
+     * the navX-MXP gyro/accelerometer circuit.
+     * @return The current temperature (in degrees centigrade).
+     */
+    public float getTempC() {
+        return mpu_temp_c;
+    }
+
+    /**
+     * Returns the navX-MXP operational status (NAVX_OP_STATUS_XXX).
+     * @return The raw operational status byte.
+     */
+    public byte getOpStatus() {
+        return op_status;
+    }
+
+    /**
+     * Returns the navX-MXP sensor status (NAVX_SENSOR_STATUS_XXX).
+     * @return The raw sensor status byte.
+     */
+    public byte getSensorStatus() {
+        return sensor_status;
+    }
+
+    /**
+     * Returns the navX-MXP calibration status (NAVX_CAL_STATUS_XXX).
+     * @return The raw calibration status byte.
+     */
+    public byte getCalStatus() {
+        return cal_status;
+    }
+}
@@ -0,0 +1,52 @@
+/* ============================================
+ NavX-MXP source code is placed under the MIT license
+ Copyright (c) 2015 Kauai Labs
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===============================================
+ */
+
+package com.kauailabs.navx_mxp;
+
+import com.kauailabs.nav6.IMUPacketReader;
+
+/**
+ * An IMUPacketReader which also frames the navX-MXP's binary packets.
+ * Binary packets carry their own length after the binary indicator, so
+ * unlike the ASCII packets their length doesn't depend on the message id.
+ */
+class AHRSPacketReader extends IMUPacketReader {
+
+    /* start, binary indicator, length, message id, checksum, terminator */
+    final static int MIN_BINARY_PACKET_LENGTH = 8;
+
+    protected int getPacketLength(byte[] buffer, int offset, int available) {
+        if ((available >= 2) &&
+            (buffer[offset+1] == AHRSProtocol.BINARY_PACKET_INDICATOR_CHAR)) {
+            if (available < 3) {
+                return 0;
+            }
+            /* the length byte counts everything after itself and the */
+            /* binary indicator */
+            int packet_length = (buffer[offset+2] & 0xFF) + 2;
+            return (packet_length >= MIN_BINARY_PACKET_LENGTH) ? packet_length : -1;
+        }
+        return super.getPacketLength(buffer, offset, available);
+    }
+}
@@ -252,7 +252,7 @@ public class AHRSProtocol extends IMUProtocol {
              (buffer[offset+2] == AHRS_UPDATE_MESSAGE_LENGTH - 2) && 
              (buffer[offset+3] == MSGID_AHRS_UPDATE)) {
             
-            if (!verifyChecksum(buffer, offset+AHRS_UPDATE_MESSAGE_CHECKSUM_INDEX)) {
+            if (!verifyChecksum(buffer, offset, AHRS_UPDATE_MESSAGE_CHECKSUM_INDEX)) {
                 return 0;
             }
             u.yaw = decodeProtocolSignedHundredthsFloat(buffer, offset+AHRS_UPDATE_YAW_VALUE_INDEX);
@@ -279,10 +279,10 @@ public class AHRSProtocol extends IMUProtocol {
             u.quat_z = decodeBinaryInt16(buffer,offset+AHRS_UPDATE_QUAT_Z_VALUE_INDEX);
             u.barometric_pressure = decodeProtocol1616Float(buffer,offset+AHRS_UPDATE_BARO_PRESSURE_VALUE_INDEX);
             u.baro_temp = decodeProtocolSignedHundredthsFloat(buffer,offset+AHRS_UPDATE_BARO_TEMP_VAUE_INDEX);
-            u.op_status = buffer[AHRS_UPDATE_OPSTATUS_VALUE_INDEX];
-            u.sensor_status = buffer[AHRS_UPDATE_SENSOR_STATUS_VALUE_INDEX];
-            u.cal_status = buffer[AHRS_UPDATE_CAL_STATUS_VALUE_INDEX];
-            u.selftest_status = buffer[AHRS_UPDATE_SELFTEST_STATUS_VALUE_INDEX];
+            u.op_status = buffer[offset+AHRS_UPDATE_OPSTATUS_VALUE_INDEX];
+            u.sensor_status = buffer[offset+AHRS_UPDATE_SENSOR_STATUS_VALUE_INDEX];
+            u.cal_status = buffer[offset+AHRS_UPDATE_CAL_STATUS_VALUE_INDEX];
+            u.selftest_status = buffer[offset+AHRS_UPDATE_SELFTEST_STATUS_VALUE_INDEX];
             return AHRS_UPDATE_MESSAGE_LENGTH;
         }
         return 0;
@@ -543,7 +543,8 @@ public class AHRSProtocol extends IMUProtocol {
     /* <int16>.<uint16> (-32768.9999 to 32767.9999) */
     public static float decodeProtocol1616Float( byte[] buffer, int offset ) {
         float result = (float)decodeBinaryInt16(buffer,offset);
-        float decimal_portion = ((float)decodeProtocolUint16(buffer,offset+2)) / 65535;
+        /* the decimal portion is binary, like the rest of the field */
+        float decimal_portion = ((float)(decodeBinaryUint16(buffer,offset+2) & 0xFFFF)) / 65535;
         if ( result >= 0.0 ) {
                 result += decimal_portion;
         } else {
@@ -0,0 +1,66 @@
+/* ============================================
+ NavX-MXP source code is placed under the MIT license
+ Copyright (c) 2015 Kauai Labs
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===============================================
+ */
+
+package com.kauailabs.navx_mxp;
+
+/**
+ * Register addresses used to read the navX-MXP over I2C or SPI.  Multi-byte
+ * values are little endian, and use the same encodings as the fields of the
+ * binary AHRS update packet (see AHRSProtocol).
+ * 
+ * This map follows the navX-MXP firmware's register layout, but has only
+ * been checked against a simulated register bus, not a real navX-MXP.
+ */
+public class AHRSRegisters {
+
+    public final static byte NAVX_REG_WHOAMI            = 0x00;
+    public final static byte NAVX_REG_UPDATE_RATE_HZ    = 0x04; /* Hz (4-50) */
+    public final static byte NAVX_REG_ACCEL_FSR_G       = 0x05;
+    public final static byte NAVX_REG_GYRO_FSR_DPS_L    = 0x06; /* uint16 */
+    public final static byte NAVX_REG_OP_STATUS         = 0x08; /* NAVX_OP_STATUS_XXX */
+    public final static byte NAVX_REG_CAL_STATUS        = 0x09; /* NAVX_CAL_STATUS_XXX */
+    public final static byte NAVX_REG_SELFTEST_STATUS   = 0x0A; /* NAVX_SELFTEST_STATUS_XXX */
+    public final static byte NAVX_REG_SENSOR_STATUS_L   = 0x10; /* NAVX_SENSOR_STATUS_XXX */
+    public final static byte NAVX_REG_TIMESTAMP_L_L     = 0x12; /* uint32 milliseconds */
+    public final static byte NAVX_REG_YAW_L             = 0x16; /* Degrees.  Signed Hundredths */
+    public final static byte NAVX_REG_ROLL_L            = 0x18; /* Degrees.  Signed Hundredths */
+    public final static byte NAVX_REG_PITCH_L           = 0x1A; /* Degrees.  Signed Hundredths */
+    public final static byte NAVX_REG_HEADING_L         = 0x1C; /* Degrees.  Unsigned Hundredths */
+    public final static byte NAVX_REG_FUSED_HEADING_L   = 0x1E; /* Degrees.  Unsigned Hundredths */
+    public final static byte NAVX_REG_ALTITUDE_I_L      = 0x20; /* Meters.   Signed integer portion */
+    public final static byte NAVX_REG_ALTITUDE_D_L      = 0x22; /* Meters.   Unsigned decimal portion */
+    public final static byte NAVX_REG_LINEAR_ACC_X_L    = 0x24; /* Inst. G.  Signed Thousandths */
+    public final static byte NAVX_REG_LINEAR_ACC_Y_L    = 0x26; /* Inst. G.  Signed Thousandths */
+    public final static byte NAVX_REG_LINEAR_ACC_Z_L    = 0x28; /* Inst. G.  Signed Thousandths */
+    public final static byte NAVX_REG_QUAT_W_L          = 0x2A; /* INT16 */
+    public final static byte NAVX_REG_QUAT_X_L          = 0x2C; /* INT16 */
+    public final static byte NAVX_REG_QUAT_Y_L          = 0x2E; /* INT16 */
+    public final static byte NAVX_REG_QUAT_Z_L          = 0x30; /* INT16 */
+    public final static byte NAVX_REG_LAST              = 0x31;
+
+    public final static byte NAVX_CAL_STATUS_IMU_CAL_STATE_MASK = 0x03;
+
+    /* Set in a register address to write the register rather than read it */
+    public final static byte NAVX_REG_WRITE_FLAG        = (byte) 0x80;
+}
@@ -0,0 +1,56 @@
+/* ============================================
+ NavX-MXP source code is placed under the MIT license
+ Copyright (c) 2015 Kauai Labs
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===============================================
+ */
+
+package com.kauailabs.navx_mxp;
+
+import edu.wpi.first.wpilibj.I2C;
+
+/**
+ * RegisterIO over the RoboRIO's I2C bus.
+ */
+public class I2CRegisterIO implements RegisterIO {
+
+    I2C port;
+
+    /**
+     * @param port I2C port the navX-MXP is connected to
+     * @param device_address 7-bit I2C address of the navX-MXP
+     */
+    public I2CRegisterIO(I2C.Port port, int device_address) {
+        this.port = new I2C(port, device_address);
+    }
+
+    public boolean write(byte address, byte value) {
+        /* WPILib's I2C returns true if the transfer was aborted */
+        return !port.write(address | AHRSRegisters.NAVX_REG_WRITE_FLAG, value);
+    }
+
+    public boolean read(byte first_address, byte[] buffer, int length) {
+        /* select the first register and the count, then read them back */
+        if (port.write(first_address, length)) {
+            return false;
+        }
+        return !port.readOnly(buffer, length);
+    }
+}
@@ -0,0 +1,49 @@
+/* ============================================
+ NavX-MXP source code is placed under the MIT license
+ Copyright (c) 2015 Kauai Labs
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===============================================
+ */
+
+package com.kauailabs.navx_mxp;
+
+/**
+ * Register level access to the navX-MXP over a bus which, unlike the
+ * serial port, does not stream packets on its own (I2C or SPI).
+ */
+public interface RegisterIO {
+
+    /**
+     * Writes one register.
+     * @param address Register address (see AHRSRegisters)
+     * @param value Value to write
+     * @return true if the write succeeded.
+     */
+    boolean write(byte address, byte value);
+
+    /**
+     * Reads a block of consecutive registers.
+     * @param first_address Address of the first register to read
+     * @param buffer Where to put the register values
+     * @param length Number of registers to read
+     * @return true if the read succeeded and buffer holds valid data.
+     */
+    boolean read(byte first_address, byte[] buffer, int length);
+}
@@ -0,0 +1,206 @@
+/* ============================================
+ NavX-MXP source code is placed under the MIT license
+ Copyright (c) 2015 Kauai Labs
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===============================================
+ */
+
+package com.kauailabs.navx_mxp;
+
+import com.kauailabs.nav6.IMUProtocol;
+import com.kauailabs.nav6.IMUTransport;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * An IMUTransport which reads the navX-MXP's registers over I2C or SPI
+ * instead of receiving its serial stream.
+ * 
+ * The register block is polled at twice the navX-MXP's update rate.  Each
+ * time the sensor timestamp changes, the registers are repackaged as a
+ * binary AHRS update packet, so the AHRS class decodes them exactly as if
+ * they had arrived on the serial port.  Stream commands are answered
+ * locally: the requested update rate is written to the update rate
+ * register, and a stream response is made from the configuration and
+ * calibration registers.
+ * 
+ * Register buses only carry the AHRS data, so this transport should be
+ * used with the AHRS class rather than IMU or IMUAdvanced.
+ * 
+ * This transport is unverified: the register map (see AHRSRegisters) has
+ * only been checked against a simulated register bus, not a real
+ * navX-MXP, so the robot reads the gyro over the serial port unless
+ * Constants.GYRO.TRANSPORT is changed.
+ */
+public class RegisterTransport implements IMUTransport {
+
+    final static byte FIRST_REGISTER = AHRSRegisters.NAVX_REG_UPDATE_RATE_HZ;
+    final static int REGISTER_COUNT = AHRSRegisters.NAVX_REG_LAST - FIRST_REGISTER + 1;
+    final static int DEFAULT_UPDATE_RATE_HZ = 50;
+
+    private final RegisterIO io;
+    private final byte[] registers = new byte[REGISTER_COUNT];
+    private final IMUProtocol.StreamCommand stream_command = new IMUProtocol.StreamCommand();
+    private final IMUProtocol.StreamResponse stream_response = new IMUProtocol.StreamResponse();
+
+    /* a synthesized packet which has not been fully read yet; the AHRS */
+    /* update is longer than the stream response */
+    private final byte[] pending = new byte[AHRSProtocol.AHRS_UPDATE_MESSAGE_LENGTH];
+    private int pending_offset;
+    private int pending_length;
+
+    private long last_timestamp = -1;
+    private volatile double poll_period = 0.5 / DEFAULT_UPDATE_RATE_HZ;
+
+    /**
+     * Constructs a transport.
+     * @param io The bus the navX-MXP's registers are read over
+     */
+    public RegisterTransport(RegisterIO io) {
+        this.io = io;
+    }
+
+    public int read(byte[] buffer, int offset, int length) {
+        synchronized (this) {
+            if (pending_length > 0) {
+                return takePending(buffer, offset, length);
+            }
+        }
+        Timer.delay(poll_period);
+        synchronized (this) {
+            if (pending_length > 0) {
+                return takePending(buffer, offset, length);
+            }
+            if (!io.read(FIRST_REGISTER, registers, REGISTER_COUNT)) {
+                return 0;
+            }
+            setPollPeriod(registers[0]);
+            long timestamp = getRegisterUint32(AHRSRegisters.NAVX_REG_TIMESTAMP_L_L);
+            if (timestamp == last_timestamp) {
+                /* no new sample since the last poll */
+                return 0;
+            }
+            last_timestamp = timestamp;
+            pending_offset = 0;
+            pending_length = encodeAHRSUpdate(pending);
+            return takePending(buffer, offset, length);
+        }
+    }
+
+    public synchronized void write(byte[] buffer, int length) {
+        if (IMUProtocol.decodeStreamCommand(buffer, 0, length, stream_command) == 0) {
+            return;
+        }
+        if (stream_command.update_rate_hz > 0) {
+            io.write(AHRSRegisters.NAVX_REG_UPDATE_RATE_HZ, stream_command.update_rate_hz);
+        }
+        if (!io.read(FIRST_REGISTER, registers, REGISTER_COUNT)) {
+            /* no response; the IMU will send the command again */
+            return;
+        }
+        setPollPeriod(registers[0]);
+        stream_response.stream_type = stream_command.stream_type;
+        stream_response.update_rate_hz = (short) (registers[0] & 0xFF);
+        stream_response.accel_fsr_g = (short) (getRegister(AHRSRegisters.NAVX_REG_ACCEL_FSR_G) & 0xFF);
+        stream_response.gyro_fsr_dps = getRegisterUint16(AHRSRegisters.NAVX_REG_GYRO_FSR_DPS_L);
+        stream_response.yaw_offset_degrees = 0;
+        /* the navX-MXP's IMU calibration states match the nav6 flags */
+        stream_response.flags = (short) (getRegister(AHRSRegisters.NAVX_REG_CAL_STATUS)
+                & AHRSRegisters.NAVX_CAL_STATUS_IMU_CAL_STATE_MASK);
+        pending_offset = 0;
+        pending_length = IMUProtocol.encodeStreamResponse(pending, stream_response);
+    }
+
+    public synchronized void reset() {
+        pending_length = 0;
+    }
+
+    private int takePending(byte[] buffer, int offset, int length) {
+        int count = Math.min(length, pending_length);
+        System.arraycopy(pending, pending_offset, buffer, offset, count);
+        pending_offset += count;
+        pending_length -= count;
+        return count;
+    }
+
+    private void setPollPeriod(byte update_rate_hz) {
+        int rate = update_rate_hz & 0xFF;
+        if (rate > 0) {
+            poll_period = 0.5 / rate;
+        }
+    }
+
+    private byte getRegister(byte address) {
+        return registers[address - FIRST_REGISTER];
+    }
+
+    private short getRegisterUint16(byte address) {
+        return AHRSProtocol.decodeBinaryUint16(registers, address - FIRST_REGISTER);
+    }
+
+    private long getRegisterUint32(byte address) {
+        int index = address - FIRST_REGISTER;
+        return (registers[index] & 0xFFL)
+                | ((registers[index + 1] & 0xFFL) << 8)
+                | ((registers[index + 2] & 0xFFL) << 16)
+                | ((registers[index + 3] & 0xFFL) << 24);
+    }
+
+    private void copyRegisters(byte address, byte[] packet, int index, int count) {
+        System.arraycopy(registers, address - FIRST_REGISTER, packet, index, count);
+    }
+
+    /* The registers use the same little endian encodings as the packet, */
+    /* so each field is copied over unchanged. */
+    private int encodeAHRSUpdate(byte[] packet) {
+        // Header
+        packet[0] = AHRSProtocol.PACKET_START_CHAR;
+        packet[1] = AHRSProtocol.BINARY_PACKET_INDICATOR_CHAR;
+        packet[2] = AHRSProtocol.AHRS_UPDATE_MESSAGE_LENGTH - 2;
+        packet[3] = AHRSProtocol.MSGID_AHRS_UPDATE;
+
+        // Data
+        for (int i = 4; i < AHRSProtocol.AHRS_UPDATE_MESSAGE_CHECKSUM_INDEX; i++) {
+            packet[i] = 0;
+        }
+        copyRegisters(AHRSRegisters.NAVX_REG_YAW_L, packet, AHRSProtocol.AHRS_UPDATE_YAW_VALUE_INDEX, 2);
+        copyRegisters(AHRSRegisters.NAVX_REG_PITCH_L, packet, AHRSProtocol.AHRS_UPDATE_PITCH_VALUE_INDEX, 2);
+        copyRegisters(AHRSRegisters.NAVX_REG_ROLL_L, packet, AHRSProtocol.AHRS_UPDATE_ROLL_VALUE_INDEX, 2);
+        copyRegisters(AHRSRegisters.NAVX_REG_HEADING_L, packet, AHRSProtocol.AHRS_UPDATE_HEADING_VALUE_INDEX, 2);
+        /* the packet's 16:16 fields hold the integer portion first, */
+        /* then the decimal portion (see decodeProtocol1616Float()) */
+        copyRegisters(AHRSRegisters.NAVX_REG_ALTITUDE_I_L, packet, AHRSProtocol.AHRS_UPDATE_ALTITUDE_VALUE_INDEX, 2);
+        copyRegisters(AHRSRegisters.NAVX_REG_ALTITUDE_D_L, packet, AHRSProtocol.AHRS_UPDATE_ALTITUDE_VALUE_INDEX + 2, 2);
+        copyRegisters(AHRSRegisters.NAVX_REG_FUSED_HEADING_L, packet, AHRSProtocol.AHRS_UPDATE_FUSED_HEADING_VALUE_INDEX, 2);
+        copyRegisters(AHRSRegisters.NAVX_REG_LINEAR_ACC_X_L, packet, AHRSProtocol.AHRS_UPDATE_LINEAR_ACCEL_X_VALUE_INDEX, 2);
+        copyRegisters(AHRSRegisters.NAVX_REG_LINEAR_ACC_Y_L, packet, AHRSProtocol.AHRS_UPDATE_LINEAR_ACCEL_Y_VALUE_INDEX, 2);
+        copyRegisters(AHRSRegisters.NAVX_REG_LINEAR_ACC_Z_L, packet, AHRSProtocol.AHRS_UPDATE_LINEAR_ACCEL_Z_VALUE_INDEX, 2);
+        copyRegisters(AHRSRegisters.NAVX_REG_QUAT_W_L, packet, AHRSProtocol.AHRS_UPDATE_QUAT_W_VALUE_INDEX, 8);
+        packet[AHRSProtocol.AHRS_UPDATE_OPSTATUS_VALUE_INDEX] = getRegister(AHRSRegisters.NAVX_REG_OP_STATUS);
+        packet[AHRSProtocol.AHRS_UPDATE_SENSOR_STATUS_VALUE_INDEX] = getRegister(AHRSRegisters.NAVX_REG_SENSOR_STATUS_L);
+        packet[AHRSProtocol.AHRS_UPDATE_CAL_STATUS_VALUE_INDEX] = getRegister(AHRSRegisters.NAVX_REG_CAL_STATUS);
+        packet[AHRSProtocol.AHRS_UPDATE_SELFTEST_STATUS_VALUE_INDEX] = getRegister(AHRSRegisters.NAVX_REG_SELFTEST_STATUS);
+
+        // Footer
+        AHRSProtocol.encodeTermination(packet, AHRSProtocol.AHRS_UPDATE_MESSAGE_LENGTH,
+                AHRSProtocol.AHRS_UPDATE_MESSAGE_LENGTH - 4);
+        return AHRSProtocol.AHRS_UPDATE_MESSAGE_LENGTH;
+    }
+}
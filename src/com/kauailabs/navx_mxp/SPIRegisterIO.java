@@ -0,0 +1,112 @@
+/* ============================================
+ NavX-MXP source code is placed under the MIT license
+ Copyright (c) 2015 Kauai Labs
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===============================================
+ */
+
+package com.kauailabs.navx_mxp;
+
+import edu.wpi.first.wpilibj.SPI;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * RegisterIO over the RoboRIO's SPI bus.
+ * 
+ * Every request and response carries a CRC, so a read which was corrupted
+ * on the bus is reported as failed rather than returned.
+ */
+public class SPIRegisterIO implements RegisterIO {
+
+    public final static int DEFAULT_CLOCK_RATE_HZ = 500000;
+    final static int MAX_READ_LENGTH = 255;
+
+    /* time for the navX-MXP to load the requested registers */
+    final static double READ_DELAY_SECONDS = 0.0002;
+
+    SPI port;
+    private final byte[] cmd = new byte[3];
+    private final byte[] rx_buffer = new byte[MAX_READ_LENGTH + 1];
+
+    /**
+     * @param port SPI port the navX-MXP is connected to
+     * @param clock_rate_hz SPI clock rate, at most 2 MHz
+     */
+    public SPIRegisterIO(SPI.Port port, int clock_rate_hz) {
+        this.port = new SPI(port);
+        this.port.setClockRate(clock_rate_hz);
+        this.port.setMSBFirst();
+        this.port.setSampleDataOnFalling();
+        this.port.setClockActiveLow();
+        this.port.setChipSelectActiveLow();
+    }
+
+    /**
+     * @param port SPI port the navX-MXP is connected to
+     */
+    public SPIRegisterIO(SPI.Port port) {
+        this(port, DEFAULT_CLOCK_RATE_HZ);
+    }
+
+    public boolean write(byte address, byte value) {
+        cmd[0] = (byte) (address | AHRSRegisters.NAVX_REG_WRITE_FLAG);
+        cmd[1] = value;
+        cmd[2] = getCRC(cmd, 2);
+        return port.write(cmd, cmd.length) == cmd.length;
+    }
+
+    public boolean read(byte first_address, byte[] buffer, int length) {
+        if (length > MAX_READ_LENGTH) {
+            throw new IllegalArgumentException("Can't read more than "
+                    + MAX_READ_LENGTH + " registers at once");
+        }
+        cmd[0] = first_address;
+        cmd[1] = (byte) length;
+        cmd[2] = getCRC(cmd, 2);
+        if (port.write(cmd, cmd.length) != cmd.length) {
+            return false;
+        }
+        Timer.delay(READ_DELAY_SECONDS);
+        if (port.read(true, rx_buffer, length + 1) != length + 1) {
+            return false;
+        }
+        /* the last byte is the CRC of the register values */
+        if (getCRC(rx_buffer, length) != rx_buffer[length]) {
+            return false;
+        }
+        System.arraycopy(rx_buffer, 0, buffer, 0, length);
+        return true;
+    }
+
+    /* CRC-7 used by the navX-MXP SPI protocol */
+    static byte getCRC(byte[] message, int length) {
+        int crc = 0;
+        for (int i = 0; i < length; i++) {
+            crc ^= (0x00FF & message[i]);
+            for (int j = 0; j < 8; j++) {
+                if ((crc & 0x0001) != 0) {
+                    crc ^= 0x0091;
+                }
+                crc >>= 1;
+            }
+        }
+        return (byte) crc;
+    }
+}
@@ -6,7 +6,12 @@ package com.milkenknights.common;
  * @author Daniel Kessler
  */
 public abstract class AutonomousAction {
+    private static final MSubsystem[] NO_REQUIREMENTS = new MSubsystem[0];
+    
     private CurrentState currentState;
+    private MSubsystem[] requirements = NO_REQUIREMENTS;
+    /** True if start() should leave the requirements for takeRequirements(). */
+    private boolean deferRequirements;
     
     public enum CurrentState {
         /** The action is running and in the foreground. */
@@ -37,14 +42,125 @@ public abstract class AutonomousAction {
         END_FORK
     }
     
+    /**
+     * Declare that this action drives a subsystem. This should be called from
+     * the constructor of actions that keep controlling a subsystem over
+     * several loops (e.g. PID moves). Actions that just set a state and end
+     * right away don't need to.
+     * 
+     * While this action is running it owns the subsystem: AutonomousList
+     * interrupts any older running action that owns it, and AutonomousGraph
+     * waits until it is free before starting another action that needs it.
+     * 
+     * @param subsystem The subsystem that this action drives.
+     */
+    protected void requires(MSubsystem subsystem) {
+        for (MSubsystem s : requirements) {
+            if (s == subsystem) {
+                return;
+            }
+        }
+        MSubsystem[] combined = new MSubsystem[requirements.length + 1];
+        System.arraycopy(requirements, 0, combined, 0, requirements.length);
+        combined[requirements.length] = subsystem;
+        requirements = combined;
+    }
+    
+    /**
+     * Don't take ownership of the subsystems passed to requires() when this
+     * action starts. The action calls takeRequirements() once it actually
+     * starts driving them instead. This is for actions that wait in the
+     * background for most of a routine and only drive their subsystems at
+     * the end, so that the actions in between don't interrupt them.
+     */
+    protected void deferRequirements() {
+        deferRequirements = true;
+    }
+    
+    /**
+     * Take ownership of the subsystems passed to requires(), interrupting
+     * any other running action that owns one of them. Actions that called
+     * deferRequirements() use this when they start driving their
+     * subsystems. If that interrupts the action an AutonomousList is
+     * waiting on, the list waits for this action to end before going on.
+     */
+    protected void takeRequirements() {
+        for (MSubsystem s : requirements) {
+            AutonomousAction owner = s.getOwner();
+            if (owner != null && owner != this) {
+                owner.interrupt();
+            }
+            s.setOwner(this);
+        }
+    }
+    
+    /**
+     * Get the subsystems that this action drives. The returned array should
+     * not be modified.
+     * 
+     * @return The subsystems passed to requires().
+     */
+    public MSubsystem[] getRequirements() {
+        return requirements;
+    }
+    
+    /**
+     * Check if this action is driving any of the subsystems that another
+     * action requires. A running action owns everything it requires, unless
+     * it deferred its requirements and hasn't taken them yet.
+     * 
+     * @param other The other action.
+     * @return true if the two actions can't run at the same time.
+     */
+    public boolean conflictsWith(AutonomousAction other) {
+        for (MSubsystem s : other.requirements) {
+            if (s.getOwner() == this) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void releaseRequirements() {
+        for (MSubsystem s : requirements) {
+            if (s.getOwner() == this) {
+                s.setOwner(null);
+            }
+        }
+    }
+    
     /** This will be run once before the action starts */
     protected abstract void startCode();
     
     public void start() {
+        if (!deferRequirements) {
+            takeRequirements();
+        }
         startCode();
         currentState = CurrentState.FOREGROUND;
     }
     
+    /**
+     * This will be run if the action is stopped before it ends by itself,
+     * e.g. because another action needs one of its subsystems.
+     */
+    protected void interruptedCode() {
+        
+    }
+    
+    /**
+     * Stop this action if it is running. Its subsystems are released and its
+     * state becomes ENDED.
+     */
+    public void interrupt() {
+        if (currentState == CurrentState.FOREGROUND
+                || currentState == CurrentState.BACKGROUND) {
+            interruptedCode();
+            releaseRequirements();
+            currentState = CurrentState.ENDED;
+        }
+    }
+    
     /**
      * Run this periodically when this action is active
      * @return what this action should do next.
@@ -82,12 +198,23 @@ public abstract class AutonomousAction {
                 out = EndState.END;
             }
             currentState = CurrentState.ENDED;
+            releaseRequirements();
             break;
         }
         
         return out;
     }
     
+    /**
+     * Put this action back in the NOT_STARTED state so that it can be run
+     * again. Actions should set up all of their per-run state in startCode()
+     * so that a reset action behaves like a freshly constructed one.
+     */
+    public void reset() {
+        releaseRequirements();
+        currentState = CurrentState.NOT_STARTED;
+    }
+    
     /**
      * Get the state of this AutonomousAction.
      * 
@@ -0,0 +1,193 @@
+package com.milkenknights.common;
+
+import com.milkenknights.common.AutonomousAction.CurrentState;
+
+/**
+ * An AutonomousAction that runs a group of other actions in parallel.
+ *
+ * Each action in the graph can list prerequisites (other actions in the graph
+ * that have to end or be backgrounded before it starts) and the subsystems
+ * that it drives (in addition to the ones it declares with requires()). Every
+ * loop, every action whose prerequisites are done and whose subsystems are not
+ * owned by another running action is started at once, so independent motions
+ * (e.g. the elevator and the drive) overlap without having to hand-order them.
+ *
+ * For example:
+ * <pre>
+ * AutonomousGraph g = new AutonomousGraph();
+ * AutonomousGraph.Node lift = g.add(new ElevatorMoveAction(...),
+ *         subsystems.elevator());
+ * AutonomousGraph.Node drive = g.add(new PIDStraightAction(...),
+ *         subsystems.drive());
+ * g.add(new IntakeActuatorsSet(...), subsystems.groundIntake())
+ *         .after(lift, drive);
+ * </pre>
+ *
+ * The graph ends once every action in it has ended. Since the graph is an
+ * AutonomousAction itself, it can be used as one step of an AutonomousList.
+ */
+public class AutonomousGraph extends AutonomousAction {
+    /** One action in an AutonomousGraph. */
+    public static class Node {
+        private final AutonomousGraph graph;
+        private final int index;
+        private final AutonomousAction action;
+
+        private Node[] prerequisites = new Node[0];
+
+        private Node(AutonomousGraph graph, int index,
+                AutonomousAction action) {
+            this.graph = graph;
+            this.index = index;
+            this.action = action;
+        }
+
+        /**
+         * Don't start this action until all of the given actions have ended
+         * or been backgrounded. Prerequisites have to be added to the graph
+         * before this action, which guarantees that the graph has no cycles.
+         *
+         * @param nodes The actions that have to finish first.
+         * @return this Node, so calls can be chained.
+         */
+        public Node after(Node... nodes) {
+            for (Node n : nodes) {
+                if (n.graph != graph) {
+                    throw new IllegalArgumentException(
+                            "Prerequisite belongs to a different graph");
+                }
+                if (n.index >= index) {
+                    throw new IllegalArgumentException("Prerequisite "
+                            + n.index + " was not added before action "
+                            + index);
+                }
+            }
+
+            Node[] combined = new Node[prerequisites.length + nodes.length];
+            System.arraycopy(prerequisites, 0, combined, 0,
+                    prerequisites.length);
+            System.arraycopy(nodes, 0, combined, prerequisites.length,
+                    nodes.length);
+            prerequisites = combined;
+            return this;
+        }
+
+        /**
+         * @return The action that this node runs.
+         */
+        public AutonomousAction getAction() {
+            return action;
+        }
+
+        private boolean isRunning() {
+            CurrentState s = action.getCurrentState();
+            return s == CurrentState.FOREGROUND
+                    || s == CurrentState.BACKGROUND;
+        }
+
+        /** @return true if actions that depend on this one may start. */
+        private boolean isDone() {
+            CurrentState s = action.getCurrentState();
+            return s == CurrentState.ENDED || s == CurrentState.BACKGROUND;
+        }
+    }
+
+    private Node[] nodes = new Node[8];
+    private int nodeCount;
+
+    /**
+     * Add an action to this graph.
+     *
+     * @param action The action to run.
+     * @param requirements Extra subsystems that this action drives. Two
+     *                     actions that share a subsystem will never run at
+     *                     once.
+     * @return The Node for this action, which can be used to add
+     *         prerequisites.
+     */
+    public Node add(AutonomousAction action, MSubsystem... requirements) {
+        if (nodeCount == nodes.length) {
+            Node[] bigger = new Node[nodes.length * 2];
+            System.arraycopy(nodes, 0, bigger, 0, nodeCount);
+            nodes = bigger;
+        }
+        for (MSubsystem r : requirements) {
+            action.requires(r);
+        }
+        Node n = new Node(this, nodeCount, action);
+        nodes[nodeCount++] = n;
+        return n;
+    }
+
+    private boolean isReady(Node n) {
+        if (n.action.getCurrentState() != CurrentState.NOT_STARTED) {
+            return false;
+        }
+        for (Node p : n.prerequisites) {
+            if (!p.isDone()) {
+                return false;
+            }
+        }
+        // wait for the subsystems to be free, whether they are owned by an
+        // action in this graph or by one running outside of it
+        for (MSubsystem r : n.action.getRequirements()) {
+            if (r.getOwner() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void startCode() {
+        for (int i = 0; i < nodeCount; i++) {
+            nodes[i].action.reset();
+        }
+    }
+
+    /**
+     * Put this graph and every action in it back in the NOT_STARTED state, so
+     * that none of them still own their subsystems when the graph is run
+     * again.
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        for (int i = 0; i < nodeCount; i++) {
+            nodes[i].action.reset();
+        }
+    }
+
+    @Override
+    protected void interruptedCode() {
+        for (int i = 0; i < nodeCount; i++) {
+            nodes[i].action.interrupt();
+        }
+    }
+
+    @Override
+    protected EndState periodicCode() {
+        // run everything that is already running
+        for (int i = 0; i < nodeCount; i++) {
+            if (nodes[i].isRunning()) {
+                nodes[i].action.periodicRun();
+            }
+        }
+
+        // then start every action that is ready. Actions that just ended above
+        // have released their subsystems, and actions started here own theirs
+        // right away, so two actions can't grab the same subsystem.
+        boolean allEnded = true;
+        for (int i = 0; i < nodeCount; i++) {
+            Node n = nodes[i];
+            if (isReady(n)) {
+                n.action.start();
+            }
+            if (n.action.getCurrentState() != CurrentState.ENDED) {
+                allEnded = false;
+            }
+        }
+
+        return allEnded ? EndState.END : EndState.CONTINUE;
+    }
+}
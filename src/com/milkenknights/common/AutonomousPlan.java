@@ -0,0 +1,81 @@
+package com.milkenknights.common;
+
+import java.util.Iterator;
+
+/**
+ * An immutable, ordered table of AutonomousActions. A plan is compiled once
+ * (e.g. during robotInit()) and then reset at the start of every autonomous
+ * period, so that starting autonomous never has to construct any objects.
+ */
+public final class AutonomousPlan {
+    private final AutonomousAction[] actions;
+
+    private AutonomousPlan(AutonomousAction[] actions) {
+        this.actions = actions;
+    }
+
+    /**
+     * Builds a plan out of a sequence of actions. The sequence is checked so
+     * that problems show up when the robot boots instead of in the middle of
+     * a match.
+     * 
+     * @param sequence The actions, in the order they should run.
+     * @return A new AutonomousPlan.
+     * @throws IllegalArgumentException if the sequence contains a null
+     *         action, or the same action instance more than once.
+     */
+    public static AutonomousPlan compile(Iterator<AutonomousAction> sequence) {
+        AutonomousAction[] table = new AutonomousAction[16];
+        int size = 0;
+
+        while (sequence.hasNext()) {
+            AutonomousAction a = sequence.next();
+            if (a == null) {
+                throw new IllegalArgumentException("Autonomous action " + size
+                        + " is null");
+            }
+            // an action only has one state, so it can't appear twice
+            for (int i = 0; i < size; i++) {
+                if (table[i] == a) {
+                    throw new IllegalArgumentException("Autonomous action "
+                            + size + " is the same object as action " + i);
+                }
+            }
+
+            if (size == table.length) {
+                AutonomousAction[] bigger = new AutonomousAction[size * 2];
+                System.arraycopy(table, 0, bigger, 0, size);
+                table = bigger;
+            }
+            table[size++] = a;
+        }
+
+        AutonomousAction[] trimmed = new AutonomousAction[size];
+        System.arraycopy(table, 0, trimmed, 0, size);
+        return new AutonomousPlan(trimmed);
+    }
+
+    /**
+     * @return The number of actions in this plan.
+     */
+    public int size() {
+        return actions.length;
+    }
+
+    /**
+     * @param index The position of the action in the plan.
+     * @return The action at that position.
+     */
+    public AutonomousAction get(int index) {
+        return actions[index];
+    }
+
+    /**
+     * Puts every action in this plan back into the NOT_STARTED state.
+     */
+    public void reset() {
+        for (int i = 0; i < actions.length; i++) {
+            actions[i].reset();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.milkenknights.common;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Timing and allocation measurement for the main()-based benchmarks that sit
+ * next to the code they measure (e.g. AutonomousListBenchmark). They are run
+ * on a development machine, the same way as BinaryLogDecoder:
+ * <pre>
+ * java -cp CLASSPATH com.milkenknights.frc2015.controls.AutonomousListBenchmark
+ * </pre>
+ * Each operation is run for several warmup rounds so that the JIT has
+ * compiled it, then for several measured rounds. The fastest measured round
+ * is reported, since slower rounds are mostly noise from the rest of the
+ * machine. Times are only meaningful compared with each other on the same
+ * machine; the roboRIO is several times slower.
+ * <p>
+ * Allocation is counted with the JVM's per-thread allocation counter, which
+ * HotSpot has. It is exact, so a benchmark can check that code which is
+ * supposed to allocate nothing really allocates 0 bytes.
+ */
+public class Benchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 5;
+
+    /** The result of measuring one operation. */
+    public static class Result {
+        /** The time taken by each operation, in nanoseconds. */
+        public final double nanosPerOp;
+        /**
+         * The bytes allocated by each operation, or NaN if this JVM can't
+         * count them.
+         */
+        public final double bytesPerOp;
+
+        Result(double nanosPerOp, double bytesPerOp) {
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+
+    private static int failures;
+    /** Where results go, even after quietSystemOut(). */
+    private static PrintStream out = System.out;
+
+    /**
+     * @return The bytes allocated by the current thread so far, or -1 if
+     *         this JVM can't count them.
+     */
+    public static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean counter =
+                    (com.sun.management.ThreadMXBean) bean;
+            if (counter.isThreadAllocatedMemorySupported()
+                    && counter.isThreadAllocatedMemoryEnabled()) {
+                return counter.getThreadAllocatedBytes(
+                        Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static long measureBytes(int operations, Runnable op) {
+        long before = allocatedBytes();
+        for (int i = 0; i < operations; i++) {
+            op.run();
+        }
+        long after = allocatedBytes();
+        return after - before;
+    }
+
+    /**
+     * Measure an operation and print the result.
+     *
+     * @param name What to call the operation in the output.
+     * @param operations How many times to run the operation in each round.
+     * @param op The operation.
+     * @return How long the operation took and how much it allocated.
+     */
+    public static Result run(String name, int operations, Runnable op) {
+        // allocatedBytes() can allocate a little itself; measure that so it
+        // isn't blamed on the operation
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            overhead = Math.min(overhead, measureBytes(0, op));
+        }
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            measureBytes(operations, op);
+        }
+
+        long bestNanos = Long.MAX_VALUE;
+        long bytes = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            long roundBytes = measureBytes(operations, op);
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+            bytes = Math.min(bytes, roundBytes - overhead);
+        }
+
+        double bytesPerOp = allocatedBytes() < 0 ? Double.NaN
+                : (double) bytes / operations;
+        Result result = new Result((double) bestNanos / operations, bytesPerOp);
+        out.println(String.format("%-44s %10.1f ns/op %10.1f bytes/op",
+                name, result.nanosPerOp, result.bytesPerOp));
+        return result;
+    }
+
+    /**
+     * Record a check made by a benchmark. Failed checks are printed, and make
+     * finish() exit with status 1.
+     *
+     * @param ok Whether the check passed.
+     * @param message What was being checked.
+     */
+    public static void check(boolean ok, String message) {
+        if (!ok) {
+            out.println("FAILED: " + message);
+            failures++;
+        }
+    }
+
+    /**
+     * Check that an operation allocated nothing. A JVM that can't count
+     * allocation passes, with a note.
+     *
+     * @param result The operation's result from run().
+     * @param name What to call the operation in the output.
+     */
+    public static void checkNoAllocation(Result result, String name) {
+        if (Double.isNaN(result.bytesPerOp)) {
+            out.println("(this JVM can't count allocation; " + name
+                    + " not checked)");
+            return;
+        }
+        check(result.bytesPerOp == 0, name + " allocated "
+                + result.bytesPerOp + " bytes/op");
+    }
+
+    /**
+     * Print a line of results.
+     *
+     * @param line The line to print.
+     */
+    public static void print(String line) {
+        out.println(line);
+    }
+
+    /**
+     * Throw away everything printed to System.out from now on, for code that
+     * prints while it is being measured (e.g. DebugLogger's writer thread).
+     * Results are still printed.
+     */
+    public static void quietSystemOut() {
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+    }
+
+    /**
+     * Exit, with status 1 if any check failed. Benchmarks call this at the
+     * end of main() so that background threads don't keep the JVM running.
+     */
+    public static void finish() {
+        System.exit(failures > 0 ? 1 : 0);
+    }
+}
@@ -0,0 +1,171 @@
+package com.milkenknights.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Turns binary log files written by BinaryLogSink back into text, in the same
+ * format DebugLogger prints to the console.
+ * <p>
+ * Usage:
+ * <pre>
+ * java com.milkenknights.common.BinaryLogDecoder FILE_OR_DIRECTORY...
+ * </pre>
+ * Directories are searched for debuglog-N.bin files, which are decoded in
+ * order of N.
+ */
+public class BinaryLogDecoder {
+    private final PrintStream out;
+
+    /**
+     * @param out Where to print the decoded messages.
+     */
+    public BinaryLogDecoder(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Decode one binary log file.
+     *
+     * @param file The file to decode.
+     * @throws IOException If the file can't be read or isn't a binary log.
+     */
+    public void decode(File file) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        if (in.remaining() < 13 || in.getInt() != BinaryLogSink.MAGIC) {
+            throw new IOException(file + " is not a binary log");
+        }
+        byte version = in.get();
+        if (version != BinaryLogSink.VERSION) {
+            throw new IOException(file + " has unknown version " + version);
+        }
+        long micros = in.getLong() * 1000;
+
+        ArrayList<String> tags = new ArrayList<String>();
+        double[] args = new double[255];
+        StringBuilder sb = new StringBuilder();
+
+        try {
+            while (in.hasRemaining()) {
+                byte type = in.get();
+                if (type == BinaryLogSink.END) {
+                    break;
+                } else if (type == BinaryLogSink.TAG) {
+                    int id = (int) getVarint(in);
+                    String tag = getString(in);
+                    while (tags.size() <= id) {
+                        tags.add(null);
+                    }
+                    tags.set(id, tag);
+                } else if (type == BinaryLogSink.MESSAGE) {
+                    int level = in.get();
+                    int tagId = (int) getVarint(in);
+                    micros += unzigzag(getVarint(in));
+                    String text = getString(in);
+                    int argCount = in.get() & 0xFF;
+                    for (int i = 0; i < argCount; i++) {
+                        byte argType = in.get();
+                        if (argType == BinaryLogSink.ARG_LONG) {
+                            args[i] = unzigzag(getVarint(in));
+                        } else if (argType == BinaryLogSink.ARG_DOUBLE) {
+                            args[i] = in.getDouble();
+                        } else {
+                            throw new IOException("Unknown argument type "
+                                    + argType);
+                        }
+                    }
+
+                    String tag = tagId < tags.size() ? tags.get(tagId) : null;
+                    sb.setLength(0);
+                    sb.append('[').append(micros / 1000).append("] ")
+                            .append(LogFormat.levelLabel(level))
+                            .append(" [").append(tag).append("] ");
+                    LogFormat.appendMessage(sb, text, args, argCount);
+                    out.println(sb);
+                } else {
+                    throw new IOException("Unknown record type " + type
+                            + " at byte " + (in.position() - 1));
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            // the robot probably lost power while writing this record
+            out.println("(" + file + " ends in the middle of a record)");
+        }
+    }
+
+    private static long getVarint(ByteBuffer in) {
+        long n = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            n |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return n;
+    }
+
+    private static long unzigzag(long n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = (int) getVarint(in);
+        if (length < 0 || length > in.remaining()) {
+            // the file was cut off partway through this string
+            throw new BufferUnderflowException();
+        }
+        String s = new String(in.array(), in.position(), length,
+                StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return s;
+    }
+
+    /**
+     * @param dir A directory.
+     * @return The binary log files in dir, oldest first.
+     */
+    public static File[] listLogFiles(File dir) {
+        File[] files = dir.listFiles(
+                (d, name) -> BinaryLogSink.parseFileNumber(name) >= 0);
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, Comparator.comparingLong(
+                f -> BinaryLogSink.parseFileNumber(f.getName())));
+        return files;
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: BinaryLogDecoder FILE_OR_DIRECTORY...");
+            System.exit(2);
+        }
+
+        BinaryLogDecoder decoder = new BinaryLogDecoder(System.out);
+        int failures = 0;
+        for (String arg : args) {
+            File f = new File(arg);
+            File[] files = f.isDirectory() ? listLogFiles(f) : new File[] { f };
+            for (File file : files) {
+                try {
+                    decoder.decode(file);
+                } catch (IOException e) {
+                    System.err.println(file + ": " + e.getMessage());
+                    failures++;
+                }
+            }
+        }
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+}
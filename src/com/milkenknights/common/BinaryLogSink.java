@@ -0,0 +1,318 @@
+package com.milkenknights.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+
+/**
+ * Writes DebugLogger messages to memory-mapped binary files. This is much
+ * cheaper than printing them, so every message can be kept even at the STREAM
+ * level. BinaryLogDecoder turns the files back into text.
+ * <p>
+ * Files are named debuglog-N.bin, where N goes up by one for every file. When
+ * a file is full, the next one is started, and the oldest files are deleted
+ * so that at most fileCount files exist. Every file can be decoded on its
+ * own.
+ * <p>
+ * A file starts with a header:
+ * <pre>
+ * int  MAGIC
+ * byte VERSION
+ * long wall clock time the file was started, in milliseconds
+ * </pre>
+ * followed by records, each starting with a type byte:
+ * <pre>
+ * TAG:     varint id, varint length, UTF-8 tag
+ * MESSAGE: byte level, varint tag id, zigzag varint microseconds since the
+ *          previous message (or the start of the file), varint length,
+ *          UTF-8 text, byte argument count, then for each argument either
+ *          ARG_LONG and a zigzag varint or ARG_DOUBLE and 8 bytes
+ * END:     no more records in this file
+ * </pre>
+ * Tags are only written out the first time they are used in a file, and
+ * messages refer to them by id after that.
+ * <p>
+ * This is only used by DebugLogger's writer thread, so it is not thread safe.
+ */
+class BinaryLogSink {
+    static final int MAGIC = 0x4D4B4C47; // "MKLG"
+    static final byte VERSION = 1;
+
+    static final byte END = 0;
+    static final byte TAG = 1;
+    static final byte MESSAGE = 2;
+
+    static final byte ARG_LONG = 1;
+    static final byte ARG_DOUBLE = 2;
+
+    static final String FILE_PREFIX = "debuglog-";
+    static final String FILE_SUFFIX = ".bin";
+
+    /** Text longer than this many bytes is cut off. */
+    static final int MAX_TEXT_BYTES = 4096;
+
+    /** How often to write dirty pages to flash when there is nothing to log. */
+    private static final long FORCE_INTERVAL_NANOS = 1000000000L;
+
+    private final File directory;
+    private final int fileSize;
+    private final int fileCount;
+
+    /** The N in the name of the current file. */
+    private long fileNumber;
+    private MappedByteBuffer buffer;
+
+    /** The ids of the tags that have been written to the current file. */
+    private final HashMap<String, Integer> tagIds = new HashMap<String, Integer>();
+    private long lastMicros;
+
+    private final byte[] scratch = new byte[MAX_TEXT_BYTES];
+
+    private boolean dirty;
+    private long lastForce;
+
+    /**
+     * Start a new log file in a directory. Files from earlier runs are kept,
+     * and this run's files are numbered after them.
+     *
+     * @param directory Where to put the log files. It is made if it doesn't
+     *                  exist.
+     * @param fileSize How big each file is, in bytes.
+     * @param fileCount The most files to keep.
+     * @throws IOException If the first file can't be made.
+     */
+    BinaryLogSink(File directory, int fileSize, int fileCount)
+            throws IOException {
+        if (fileSize < 16 * MAX_TEXT_BYTES) {
+            throw new IllegalArgumentException("fileSize must be at least "
+                    + 16 * MAX_TEXT_BYTES);
+        }
+        this.directory = directory;
+        this.fileSize = fileSize;
+        this.fileCount = fileCount;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not make " + directory);
+        }
+
+        fileNumber = -1;
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                fileNumber = Math.max(fileNumber, parseFileNumber(name));
+            }
+        }
+        fileNumber++;
+        open();
+
+        // clean up anything open() didn't, e.g. if fileCount went down
+        if (names != null) {
+            for (String name : names) {
+                long n = parseFileNumber(name);
+                if (n >= 0 && n <= fileNumber - fileCount) {
+                    new File(directory, name).delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param name A file name.
+     * @return The N from a name like debuglog-N.bin, or -1 if the name is not
+     *         a log file.
+     */
+    static long parseFileNumber(String name) {
+        if (!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(FILE_PREFIX.length(),
+                    name.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private File file(long number) {
+        return new File(directory, FILE_PREFIX + number + FILE_SUFFIX);
+    }
+
+    private void open() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file(fileNumber), "rw");
+        try {
+            // the mapping stays valid after the file is closed
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                    fileSize);
+        } finally {
+            raf.close();
+        }
+
+        writeHeader();
+
+        long oldest = fileNumber - fileCount;
+        if (oldest >= 0) {
+            file(oldest).delete();
+        }
+    }
+
+    private void writeHeader() {
+        buffer.putInt(MAGIC);
+        buffer.put(VERSION);
+        buffer.putLong(System.currentTimeMillis());
+        buffer.put(buffer.position(), END);
+
+        tagIds.clear();
+        lastMicros = System.nanoTime() / 1000;
+        dirty = true;
+    }
+
+    /**
+     * Finish the current file and start the next one.
+     */
+    private void rotate() {
+        buffer.force();
+        fileNumber++;
+        try {
+            open();
+        } catch (IOException e) {
+            // start the current file over rather than stop logging
+            fileNumber--;
+            buffer.clear();
+            writeHeader();
+        }
+    }
+
+    /**
+     * Write one message.
+     *
+     * @param level The message's log level.
+     * @param tag The message's tag.
+     * @param nanoTime When the message was logged, from System.nanoTime().
+     * @param text The message text.
+     * @param args The message's primitive arguments.
+     * @param argCount How many of args to write.
+     */
+    void write(int level, String tag, long nanoTime, String text,
+            double[] args, int argCount) {
+        int maxTagBytes = Math.min(3 * tag.length(), MAX_TEXT_BYTES);
+        // the largest this record (and the tag record before it) could be
+        int worstCase = 1 + 5 + 5 + maxTagBytes
+                + 1 + 1 + 5 + 10 + 5 + MAX_TEXT_BYTES + 1 + 11 * argCount + 1;
+        if (buffer.remaining() < worstCase) {
+            rotate();
+        }
+
+        Integer id = tagIds.get(tag);
+        if (id == null) {
+            id = tagIds.size();
+            tagIds.put(tag, id);
+            buffer.put(TAG);
+            putVarint(id);
+            int length = encode(tag, maxTagBytes);
+            putVarint(length);
+            buffer.put(scratch, 0, length);
+        }
+
+        long micros = nanoTime / 1000;
+        buffer.put(MESSAGE);
+        buffer.put((byte) level);
+        putVarint(id);
+        // messages from different threads can be a little out of order, so
+        // this can be negative
+        putVarint(zigzag(micros - lastMicros));
+        lastMicros = micros;
+
+        int length = encode(text, MAX_TEXT_BYTES);
+        putVarint(length);
+        buffer.put(scratch, 0, length);
+
+        buffer.put((byte) argCount);
+        for (int i = 0; i < argCount; i++) {
+            double a = args[i];
+            if (a == Math.rint(a) && Math.abs(a) < 1e15) {
+                buffer.put(ARG_LONG);
+                putVarint(zigzag((long) a));
+            } else {
+                buffer.put(ARG_DOUBLE);
+                buffer.putDouble(a);
+            }
+        }
+
+        buffer.put(buffer.position(), END);
+        dirty = true;
+    }
+
+    /**
+     * Called when there is nothing to write. Every so often, this makes sure
+     * everything written so far is on flash in case the robot loses power.
+     */
+    void idle() {
+        long now = System.nanoTime();
+        if (dirty && now - lastForce > FORCE_INTERVAL_NANOS) {
+            buffer.force();
+            dirty = false;
+            lastForce = now;
+        }
+    }
+
+    private static long zigzag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    private void putVarint(long n) {
+        while ((n & ~0x7FL) != 0) {
+            buffer.put((byte) ((n & 0x7F) | 0x80));
+            n >>>= 7;
+        }
+        buffer.put((byte) n);
+    }
+
+    /**
+     * Encode s as UTF-8 into scratch, stopping before maxBytes. A null s is
+     * encoded as "null", the same as LogFormat prints it.
+     *
+     * @return The number of bytes used.
+     */
+    private int encode(String s, int maxBytes) {
+        if (s == null) {
+            s = "null";
+        }
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (n + 1 > maxBytes) {
+                    break;
+                }
+                scratch[n++] = (byte) c;
+            } else if (c < 0x800) {
+                if (n + 2 > maxBytes) {
+                    break;
+                }
+                scratch[n++] = (byte) (0xC0 | (c >> 6));
+                scratch[n++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                if (n + 4 > maxBytes) {
+                    break;
+                }
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                scratch[n++] = (byte) (0xF0 | (cp >> 18));
+                scratch[n++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                scratch[n++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                scratch[n++] = (byte) (0x80 | (cp & 0x3F));
+            } else {
+                if (n + 3 > maxBytes) {
+                    break;
+                }
+                scratch[n++] = (byte) (0xE0 | (c >> 12));
+                scratch[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                scratch[n++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,208 @@
+package com.milkenknights.common;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a piece of code at a fixed rate on its own high priority thread, so
+ * that control code runs at a steady rate no matter when driver station
+ * packets arrive.
+ *
+ * Every iteration, the loop records how late it started compared to when it
+ * was scheduled (jitter) and how long the code took to run. If the code takes
+ * longer than one period, the iteration counts as an overrun and the missed
+ * periods are skipped instead of being run back to back.
+ */
+public class ControlLoop implements Runnable {
+    /**
+     * The source of time for a ControlLoop. This can be replaced to run a loop
+     * against a simulated clock.
+     */
+    public interface Clock {
+        /**
+         * @return A monotonic timestamp, in nanoseconds.
+         */
+        long nanoTime();
+
+        /**
+         * Block until nanoTime() reaches a deadline.
+         *
+         * @param deadline The timestamp to wait for, in nanoseconds.
+         */
+        void sleepUntil(long deadline);
+    }
+
+    /** A Clock based on System.nanoTime(). */
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        public void sleepUntil(long deadline) {
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+    };
+
+    private final String name;
+    private final Runnable body;
+    private final long periodNanos;
+    private final Clock clock;
+
+    private final LatencyHistogram jitter = new LatencyHistogram();
+    private final LatencyHistogram runTime = new LatencyHistogram();
+    private volatile long iterations;
+    private volatile long overruns;
+
+    /**
+     * The thread that should be running the loop. A loop thread exits as
+     * soon as this is no longer itself, so a thread left over from before
+     * stop() can't keep running alongside one made by the next start().
+     */
+    private volatile Thread thread;
+    /** The thread stopped by the last stop(), which may still be finishing. */
+    private Thread stopped;
+
+    /**
+     * Make a new ControlLoop. It won't run until start() is called.
+     *
+     * @param name The name of the loop's thread.
+     * @param body The code to run every period.
+     * @param period How often to run body, in seconds.
+     * @param clock The clock to schedule iterations with.
+     */
+    public ControlLoop(String name, Runnable body, double period,
+            Clock clock) {
+        this.name = name;
+        this.body = body;
+        this.periodNanos = (long) (period * 1e9);
+        this.clock = clock;
+    }
+
+    /**
+     * Make a new ControlLoop that uses the system clock.
+     *
+     * @param name The name of the loop's thread.
+     * @param body The code to run every period.
+     * @param period How often to run body, in seconds.
+     */
+    public ControlLoop(String name, Runnable body, double period) {
+        this(name, body, period, SYSTEM_CLOCK);
+    }
+
+    /**
+     * Start running the loop on a new thread. If the loop was just stopped,
+     * this first waits for the old thread's last iteration to finish.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        // let an iteration that was running when stop() was called finish,
+        // so the body never runs on two threads at once
+        if (stopped != null && stopped != Thread.currentThread()) {
+            boolean interrupted = false;
+            while (stopped.isAlive()) {
+                try {
+                    stopped.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        stopped = null;
+
+        Thread t = new Thread(this, name);
+        t.setPriority(Thread.MAX_PRIORITY);
+        t.setDaemon(true);
+        thread = t;
+        t.start();
+    }
+
+    /**
+     * Stop the loop after the current iteration. This doesn't wait for that
+     * iteration to finish, so it is safe to call from the loop's own body;
+     * the next start() waits for it instead.
+     */
+    public synchronized void stop() {
+        if (thread != null) {
+            stopped = thread;
+        }
+        thread = null;
+    }
+
+    public void run() {
+        long next = clock.nanoTime() + periodNanos;
+
+        Thread self = Thread.currentThread();
+        while (thread == self) {
+            clock.sleepUntil(next);
+            if (thread != self) {
+                // stopped while sleeping
+                break;
+            }
+
+            long start = clock.nanoTime();
+            jitter.record(start - next);
+
+            try {
+                body.run();
+            } catch (RuntimeException e) {
+                // keep the loop alive; a dead control loop is worse than one
+                // bad iteration
+                DebugLogger.log(DebugLogger.LVL_ERROR, name, e.toString());
+                e.printStackTrace();
+            }
+
+            long end = clock.nanoTime();
+            runTime.record(end - start);
+            iterations++;
+
+            next += periodNanos;
+            if (end > next) {
+                overruns++;
+                // skip the periods we missed instead of trying to catch up
+                next += ((end - next) / periodNanos + 1) * periodNanos;
+            }
+        }
+    }
+
+    /**
+     * @return How late each iteration started compared to its schedule.
+     */
+    public LatencyHistogram getJitter() {
+        return jitter;
+    }
+
+    /**
+     * @return How long the body of each iteration took to run.
+     */
+    public LatencyHistogram getRunTime() {
+        return runTime;
+    }
+
+    /**
+     * @return The number of iterations that have run.
+     */
+    public long getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return The number of iterations that ran longer than one period.
+     */
+    public long getOverruns() {
+        return overruns;
+    }
+
+    /**
+     * @return The period of this loop, in seconds.
+     */
+    public double getPeriod() {
+        return periodNanos / 1e9;
+    }
+}
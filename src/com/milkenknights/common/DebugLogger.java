@@ -1,7 +1,25 @@
 package com.milkenknights.common;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
 import com.milkenknights.frc2015.Constants;
 
+/**
+ * Logs messages to the console, and to a binary log file (see
+ * BinaryLogSink) that can be read after a match with BinaryLogDecoder.
+ * <p>
+ * log() doesn't print anything itself. It copies the message into a
+ * preallocated record in a ring buffer, and a background writer thread
+ * formats and prints the records. If the writer falls so far behind that the
+ * ring buffer is full, new messages are dropped (and counted) instead of
+ * making the caller wait.
+ */
 public class DebugLogger {
 
     public static final int LVL_STREAM = 5;
@@ -11,15 +29,105 @@ public class DebugLogger {
     public static final int LVL_SEVERE = 1;
     public static final int LVL_ERROR = 0;
     public static final String SMARTDASHBOARD_KEY = "DebugLogger Log Level";
-    private static int logDetail = Constants.DEBUG_LOGGER.DEFAULT_LOGLEVEL;
+    private static volatile int logDetail = Constants.DEBUG_LOGGER.DEFAULT_LOGLEVEL;
+    /** Levels for tags set with setLogLevel(Object, int), keyed by String or Class. */
+    private static final ConcurrentHashMap<Object, Integer> tagLevels =
+            new ConcurrentHashMap<Object, Integer>();
     private static int maxTagLength = 0;
     private static final int initTagLength = 32;
-    private static int skippedItems = 0;
-    private static int totalItems = 0;
-    private static int[] totalItemsType = new int[6];
-    private static double wastedTimeAll = 0;
-    private static double wastedTimeText = 0;
-    private static double startTime = -1;
+
+    /** The number of levels that diagnostics are kept for (0 to LVL_STREAM). */
+    private static final int LEVELS = LVL_STREAM + 1;
+    /** When DebugLogger was first used, from System.nanoTime(). */
+    private static final long startNanos = System.nanoTime();
+    /** Every call to log(), by level. */
+    private static final AtomicLongArray loggedItems = new AtomicLongArray(LEVELS);
+    /** Calls to log() that were not printed to the console, by level. */
+    private static final AtomicLongArray skippedItems = new AtomicLongArray(LEVELS);
+    /** How long log() takes on the calling thread, by level. */
+    private static final LatencyHistogram[] logTimes = new LatencyHistogram[LEVELS];
+    /** How long the writer thread takes to write one message. */
+    private static final LatencyHistogram writeTime = new LatencyHistogram();
+    /** Messages the writer thread has finished with. */
+    private static volatile long writtenItems;
+    /** Messages that threw an exception while being written. */
+    private static volatile long failedItems;
+
+    /** The most primitive arguments one record can hold. */
+    static final int MAX_ARGS = 4;
+
+    /** One message waiting to be written. */
+    static class Record {
+        int level;
+        Object tag;
+        /** When the message was logged, from System.nanoTime(). */
+        long nanoTime;
+        /** True if the message should be printed, not just saved. */
+        boolean console;
+        String text;
+        final double[] args = new double[MAX_ARGS];
+        int argCount;
+    }
+
+    private static final int CAPACITY = Constants.DEBUG_LOGGER.BUFFER_SIZE;
+    private static final int MASK = CAPACITY - 1;
+    private static final Record[] ring = new Record[CAPACITY];
+    /**
+     * For each slot in ring: if it equals the position a producer wants to
+     * write, the slot is free; if it equals that position + 1, the slot holds
+     * a record that is ready to be written.
+     */
+    private static final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    /** The next position a producer will claim. */
+    private static final AtomicLong tail = new AtomicLong();
+    /** The next position the writer will read. Only the writer changes it. */
+    private static volatile long head;
+    private static final AtomicLong droppedItems = new AtomicLong();
+
+    /**
+     * Messages at or below this level are written to the binary log, whether
+     * or not they are printed. This is -1 if there is no binary log.
+     */
+    private static volatile int binaryLevel =
+            Constants.DEBUG_LOGGER.BINARY_LOG_ENABLED
+                    ? Constants.DEBUG_LOGGER.BINARY_LOG_LEVEL : -1;
+    /** Only used by the writer thread. */
+    private static BinaryLogSink binarySink;
+
+    /** The writer thread, or null if logging is disabled. */
+    private static Thread writer;
+    /** True while the writer thread is parked waiting for a message. */
+    private static volatile boolean writerParked;
+    /**
+     * The longest the writer sleeps when there is nothing to write, so that
+     * the binary log still gets flushed to flash now and then.
+     */
+    private static final long IDLE_PARK_NANOS = 100000000L;
+
+    /** Used to turn record timestamps back into wall clock time. */
+    private static final long baseMillis = System.currentTimeMillis();
+    private static final long baseNanos = System.nanoTime();
+
+    static {
+        if ((CAPACITY & MASK) != 0) {
+            throw new IllegalArgumentException(
+                    "DEBUG_LOGGER.BUFFER_SIZE must be a power of two");
+        }
+        for (int i = 0; i < CAPACITY; i++) {
+            ring[i] = new Record();
+            sequences.set(i, i);
+        }
+        for (int i = 0; i < LEVELS; i++) {
+            logTimes[i] = new LatencyHistogram();
+        }
+
+        if (Constants.DEBUG_LOGGER.ENABLED) {
+            writer = new Thread(DebugLogger::writeLoop, "DebugLogger");
+            writer.setPriority(Thread.MIN_PRIORITY);
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
 
     /**
      * This sets the log detail level. This is used to filter based on severity.
@@ -36,11 +144,60 @@ public class DebugLogger {
         DebugLogger.logDetail = level;
     }
 
+    /**
+     * Set the log detail level for messages from one tag, instead of the level
+     * from setLogLevel(int). This way one subsystem can log at the STREAM
+     * level without flooding the console with everything else.
+     *
+     * @param tag
+     *            a String tag, or a Class to match every object of that class
+     *            used as a tag.
+     * @param level
+     *            the level to be logged for that tag.
+     */
+    public static void setLogLevel(Object tag, int level) {
+        DebugLogger.log(DebugLogger.LVL_INFO, "DebugLog", "Log detail for "
+                + tag + " set to " + level);
+        tagLevels.put(tag, level);
+    }
+
+    /**
+     * Go back to using the level from setLogLevel(int) for a tag.
+     *
+     * @param tag
+     *            a tag passed to setLogLevel(Object, int).
+     */
+    public static void clearLogLevel(Object tag) {
+        tagLevels.remove(tag);
+    }
+
+    /**
+     * @return the console log detail level for messages tagged with obj.
+     */
+    private static int consoleLevel(Object obj) {
+        if (obj == null || tagLevels.isEmpty())
+            return DebugLogger.logDetail;
+        Integer level = tagLevels.get(obj instanceof String
+                || obj instanceof Class ? obj : obj.getClass());
+        return level != null ? level : DebugLogger.logDetail;
+    }
+
+    /**
+     * @return true if a message would be printed or written to the binary
+     *         log.
+     */
+    private static boolean isLogged(int level, Object obj) {
+        return level <= consoleLevel(obj) || level <= binaryLevel;
+    }
+
     /**
      * Logs a message to the NetBeans console. The log keeps all statements in
      * alignment with the longest message. It will hide any information whose
      * log level is higher than the provided maximum detail. It uses an object
      * (typically a string) to create a tag for the message.
+     * <p>
+     * The message is printed later by the writer thread, so obj.toString() is
+     * not called until then.
      *
      * @param level
      *            the severity level of the message to be logged.
@@ -51,95 +208,492 @@ public class DebugLogger {
      *            the message to be logged.
      */
     public static void log(int level, Object obj, String text) {
+        logArgs(level, obj, text, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Logs a message with a number in it. Each "{}" in template is replaced
+     * by the next argument, but only on the writer thread and only if the
+     * message passes the level check, so this costs almost nothing when the
+     * message is filtered out.
+     *
+     * @param level
+     *            the severity level of the message to be logged.
+     * @param obj
+     *            the object (typically String) used to identify the message
+     *            source.
+     * @param template
+     *            the message to be logged, with a "{}" for each argument.
+     * @param a0
+     *            the first argument.
+     * @see #log(int, Object, String)
+     */
+    public static void log(int level, Object obj, String template, double a0) {
+        logArgs(level, obj, template, 1, a0, 0, 0, 0);
+    }
+
+    /**
+     * Logs a message with two numbers in it.
+     *
+     * @see #log(int, Object, String, double)
+     */
+    public static void log(int level, Object obj, String template, double a0,
+            double a1) {
+        logArgs(level, obj, template, 2, a0, a1, 0, 0);
+    }
+
+    /**
+     * Logs a message with three numbers in it.
+     *
+     * @see #log(int, Object, String, double)
+     */
+    public static void log(int level, Object obj, String template, double a0,
+            double a1, double a2) {
+        logArgs(level, obj, template, 3, a0, a1, a2, 0);
+    }
+
+    /**
+     * Logs a message with four numbers in it.
+     *
+     * @see #log(int, Object, String, double)
+     */
+    public static void log(int level, Object obj, String template, double a0,
+            double a1, double a2, double a3) {
+        logArgs(level, obj, template, 4, a0, a1, a2, a3);
+    }
+
+    /**
+     * Logs a message that is only built if it passes the level check. Unlike
+     * the template methods, message.get() runs on the calling thread. This
+     * has its own name so that log(level, obj, null) is not ambiguous.
+     *
+     * @param level
+     *            the severity level of the message to be logged.
+     * @param obj
+     *            the object (typically String) used to identify the message
+     *            source.
+     * @param message
+     *            makes the message to be logged.
+     * @see #log(int, Object, String)
+     */
+    public static void logLazy(int level, Object obj,
+            Supplier<String> message) {
         if (!Constants.DEBUG_LOGGER.ENABLED)
             return;
+        logArgs(level, obj, isLogged(level, obj) ? message.get() : null,
+                0, 0, 0, 0, 0);
+    }
+
+    private static void logArgs(int level, Object obj, String text,
+            int argCount, double a0, double a1, double a2, double a3) {
+        if (!Constants.DEBUG_LOGGER.ENABLED)
+            return;
+
+        long logStartTime = System.nanoTime(); // Diagnostic
 
-        long logStartTime = System.currentTimeMillis(); // Diagnostic
-
-        String strLv = "  [UNKN]";
-        if (level <= 0)
-            strLv = "[**ERROR" + Math.abs(level) + "]";
-        if (level == 1)
-            strLv = "[SEVERE]";
-        if (level == 2)
-            strLv = "  [WARN]";
-        if (level == 3)
-            strLv = "  [INFO]";
-        if (level == 4)
-            strLv = " [DEBUG]";
-        if (level == 5)
-            strLv = "[STREAM]";
-
-        if (obj.toString().length() > DebugLogger.maxTagLength
-                && level <= DebugLogger.logDetail)
-            DebugLogger.maxTagLength = obj.toString().length();
-
-        if (level <= DebugLogger.logDetail) {
-            double textStartTime = System.currentTimeMillis(); // Diagnostic
-
-            System.out.print("["
-                    + System.currentTimeMillis()
-                    + "] "
-                    + strLv
-                    + " ["
-                    + (obj.toString().substring(0, 4).equals("edu.") ? obj
-                            .toString().substring(initTagLength) : obj
-                            .toString()) + "] ");
-            for (int i = 0; i < maxTagLength - obj.toString().length(); i++)
-                System.out.print(" ");
-            System.out.println(text);
-
-            DebugLogger.wastedTimeText += (System.currentTimeMillis() - textStartTime); // Diagnostic
-        } else
-            DebugLogger.skippedItems++; // From this line forward, begin
-                                        // diagnostics
-        DebugLogger.totalItems++;
-        DebugLogger.totalItemsType[level]++;
-
-        if (DebugLogger.totalItems % Constants.DEBUG_LOGGER.INFO_DISPLAYFREQ == 0) {
-            int currLogLevel = DebugLogger.logDetail;
-            DebugLogger.logDetail = 3;
-            DebugLogger
-                    .log(DebugLogger.LVL_INFO,
-                            "DebugLog",
-                            "DebugLog has skipped "
-                                    + skippedItems
-                                    + ", has displayed "
-                                    + (totalItems - skippedItems)
-                                    + " over "
-                                    + ((System.currentTimeMillis() - DebugLogger.startTime) / 1000.0)
-                                    + " msec.");
-            DebugLogger.log(DebugLogger.LVL_INFO, "DebugLog",
-                    "Breaking down by type (0...5): " + "\n\t\tError: "
-                            + DebugLogger.totalItemsType[0] + "\n\t\tSevere: "
-                            + DebugLogger.totalItemsType[1] + "\n\t\tWarning: "
-                            + DebugLogger.totalItemsType[2] + "\n\t\tInfo: "
-                            + DebugLogger.totalItemsType[3] + "\n\t\tDebug: "
-                            + DebugLogger.totalItemsType[4] + "\n\t\tStream: "
-                            + DebugLogger.totalItemsType[5]);
-            DebugLogger
-                    .log(DebugLogger.LVL_INFO,
-                            "DebugLog",
-                            "DebugLog averages "
-                                    + (totalItems / ((System
-                                            .currentTimeMillis() - DebugLogger.startTime) / 1000.0))
-                                    + " messages per second.");
-            DebugLogger.log(DebugLogger.LVL_INFO, "DebugLog",
-                    "DebugLog has wasted an approximate total of "
-                            + (DebugLogger.wastedTimeAll / 1000.0)
-                            + " seconds, "
-                            + (DebugLogger.wastedTimeText / 1000.0)
-                            + " of which was spent rendering text.");
-            DebugLogger
-                    .log(DebugLogger.LVL_INFO,
-                            "DebugLog",
-                            "If this is considerably too high, then please consider removing stream messages.");
-            DebugLogger.logDetail = currLogLevel;
-        }
-        DebugLogger.wastedTimeAll += (System.currentTimeMillis() - logStartTime);
+        boolean console = level <= consoleLevel(obj);
+        if (console || level <= binaryLevel) {
+            long pos = claim();
+            if (pos >= 0) {
+                Record r = ring[(int) pos & MASK];
+                r.level = level;
+                r.tag = obj;
+                r.nanoTime = System.nanoTime();
+                r.console = console;
+                r.text = text;
+                r.args[0] = a0;
+                r.args[1] = a1;
+                r.args[2] = a2;
+                r.args[3] = a3;
+                r.argCount = argCount;
+                publish(pos);
+            }
+        }
+        // From this line forward, begin diagnostics
+        int levelIndex = levelIndex(level);
+        if (!console)
+            skippedItems.incrementAndGet(levelIndex);
+        loggedItems.incrementAndGet(levelIndex);
+        logTimes[levelIndex].record(System.nanoTime() - logStartTime);
         // End diagnostic code
     }
 
+    /**
+     * @return level, clamped to the levels that diagnostics are kept for.
+     */
+    private static int levelIndex(int level) {
+        return Math.max(0, Math.min(level, LEVELS - 1));
+    }
+
+    /**
+     * Claim the next free record in the ring buffer. Several threads may
+     * claim records at once.
+     *
+     * @return The position of the record to fill in, or -1 if the buffer is
+     *         full (in which case the message is counted as dropped).
+     */
+    private static long claim() {
+        long pos = tail.get();
+        while (true) {
+            long seq = sequences.get((int) pos & MASK);
+            long dif = seq - pos;
+            if (dif == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    return pos;
+                }
+                pos = tail.get();
+            } else if (dif < 0) {
+                // the writer hasn't freed this slot yet
+                droppedItems.incrementAndGet();
+                return -1;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Hand a record filled in after claim() over to the writer thread.
+     *
+     * @param pos The position returned by claim().
+     */
+    private static void publish(long pos) {
+        // a volatile write, so that the writer can't be seen as parked before
+        // the slot is seen as ready (see writeLoop())
+        sequences.set((int) pos & MASK, pos + 1);
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Wait until the writer thread has printed every message logged so far,
+     * or until timeout passes.
+     *
+     * @param timeout How long to wait at most, in seconds.
+     * @return true if every message was printed.
+     */
+    public static boolean flush(double timeout) {
+        long target = tail.get();
+        long deadline = System.nanoTime() + (long) (timeout * 1e9);
+        while (head < target) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            LockSupport.parkNanos(1000000);
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of messages that were dropped because the ring buffer
+     *         was full.
+     */
+    public static long getDroppedCount() {
+        return droppedItems.get();
+    }
+
+    private static void writeLoop() {
+        StringBuilder sb = new StringBuilder(256);
+        long reportedDrops = 0;
+
+        if (binaryLevel >= 0) {
+            try {
+                binarySink = new BinaryLogSink(
+                        new File(Constants.DEBUG_LOGGER.BINARY_LOG_DIR),
+                        Constants.DEBUG_LOGGER.BINARY_LOG_FILE_SIZE,
+                        Constants.DEBUG_LOGGER.BINARY_LOG_FILE_COUNT);
+            } catch (IOException e) {
+                binaryLevel = -1;
+                printLine(sb, LVL_WARN, "DebugLog",
+                        "Could not open the binary log: " + e);
+            }
+        }
+
+        while (true) {
+            long pos = head;
+            int index = (int) pos & MASK;
+            if (sequences.get(index) != pos + 1) {
+                // nothing to write
+                if (binarySink != null) {
+                    binarySink.idle();
+                }
+                writerParked = true;
+                // check again in case a message was published before the
+                // producer could see writerParked
+                if (sequences.get(index) != pos + 1) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                writerParked = false;
+                continue;
+            }
+
+            long textStartTime = System.nanoTime(); // Diagnostic
+            try {
+                write(ring[index], sb);
+            } catch (RuntimeException e) {
+                // e.g. the tag's toString() threw; skip this message rather
+                // than let the writer thread die
+                failedItems++;
+                printLine(sb, LVL_WARN, "DebugLog",
+                        "DebugLog could not write a message: " + e);
+            }
+            // drop references so the text and tag can be collected
+            ring[index].tag = null;
+            ring[index].text = null;
+            sequences.lazySet(index, pos + CAPACITY);
+            head = pos + 1;
+            writeTime.record(System.nanoTime() - textStartTime); // Diagnostic
+            writtenItems++;
+
+            long dropped = droppedItems.get();
+            if (dropped != reportedDrops) {
+                printLine(sb, LVL_WARN, "DebugLog", "DebugLog dropped "
+                        + (dropped - reportedDrops)
+                        + " messages because the buffer was full.");
+                reportedDrops = dropped;
+            }
+
+            if (writtenItems % Constants.DEBUG_LOGGER.INFO_DISPLAYFREQ == 0) {
+                printDiagnostics(sb);
+            }
+        }
+    }
+
+    private static void write(Record r, StringBuilder sb) {
+        String tag = String.valueOf(r.tag);
+
+        if (binarySink != null && r.level <= binaryLevel) {
+            binarySink.write(r.level, tag, r.nanoTime, r.text, r.args,
+                    r.argCount);
+        }
+
+        if (r.console) {
+            startLine(sb, r.level, tag, r.nanoTime);
+            LogFormat.appendMessage(sb, r.text, r.args, r.argCount);
+            System.out.println(sb);
+        }
+    }
+
+    private static void printLine(StringBuilder sb, int level, Object obj,
+            String text) {
+        startLine(sb, level, String.valueOf(obj), System.nanoTime());
+        sb.append(text);
+        System.out.println(sb);
+    }
+
+    /**
+     * Clear sb and fill it with everything in a console line that comes
+     * before the message: the time, the level and the tag.
+     */
+    private static void startLine(StringBuilder sb, int level, String tag,
+            long nanoTime) {
+        if (tag.length() > DebugLogger.maxTagLength)
+            DebugLogger.maxTagLength = tag.length();
+
+        sb.setLength(0);
+        sb.append('[')
+                .append(baseMillis + (nanoTime - baseNanos) / 1000000)
+                .append("] ")
+                .append(LogFormat.levelLabel(level))
+                .append(" [")
+                .append(tag.startsWith("edu.") ? tag.substring(
+                        Math.min(initTagLength, tag.length())) : tag)
+                .append("] ");
+        for (int i = 0; i < maxTagLength - tag.length(); i++)
+            sb.append(' ');
+    }
+
+    private static void printDiagnostics(StringBuilder sb) {
+        Stats stats = getStats();
+        printLine(sb, LVL_INFO, "DebugLog", "DebugLog has skipped "
+                + stats.getTotalSkipped()
+                + ", has displayed "
+                + (stats.getTotalLogged() - stats.getTotalSkipped())
+                + " over "
+                + stats.getUptime()
+                + " seconds.");
+        printLine(sb, LVL_INFO, "DebugLog",
+                "Breaking down by type (0...5): " + "\n\t\tError: "
+                        + stats.getLogged(LVL_ERROR) + "\n\t\tSevere: "
+                        + stats.getLogged(LVL_SEVERE) + "\n\t\tWarning: "
+                        + stats.getLogged(LVL_WARN) + "\n\t\tInfo: "
+                        + stats.getLogged(LVL_INFO) + "\n\t\tDebug: "
+                        + stats.getLogged(LVL_DEBUG) + "\n\t\tStream: "
+                        + stats.getLogged(LVL_STREAM));
+        printLine(sb, LVL_INFO, "DebugLog", "DebugLog averages "
+                + stats.getMessagesPerSecond()
+                + " messages per second.");
+        printLine(sb, LVL_INFO, "DebugLog",
+                "DebugLog has spent a total of "
+                        + stats.getTotalLogTime() / 1e9
+                        + " seconds in log() (p99 "
+                        + stats.getLogTimeP99(LVL_STREAM) / 1e3
+                        + " us for STREAM), and "
+                        + stats.getTotalWriteTime() / 1e9
+                        + " seconds writing messages.");
+        printLine(sb, LVL_INFO, "DebugLog", "Dropped "
+                + stats.getDropped() + " messages because the buffer was full, "
+                + "and " + stats.getFailed() + " because they could not be "
+                + "written.");
+    }
+
+    /**
+     * Get the histogram of how long log() takes on the calling thread for one
+     * level.
+     *
+     * @param level A log level from LVL_ERROR to LVL_STREAM.
+     * @return The live histogram, in nanoseconds.
+     */
+    public static LatencyHistogram getLogTime(int level) {
+        return logTimes[levelIndex(level)];
+    }
+
+    /**
+     * @return The live histogram of how long the writer thread takes to write
+     *         one message, in nanoseconds.
+     */
+    public static LatencyHistogram getWriteTime() {
+        return writeTime;
+    }
+
+    /**
+     * @return A snapshot of DebugLogger's counters.
+     */
+    public static Stats getStats() {
+        return new Stats();
+    }
+
+    /**
+     * A snapshot of DebugLogger's diagnostics, taken when it was made.
+     */
+    public static class Stats {
+        private final double uptime;
+        private final long[] logged = new long[LEVELS];
+        private final long[] skipped = new long[LEVELS];
+        private final long[] logTimeP99 = new long[LEVELS];
+        private final long totalLogged;
+        private final long totalSkipped;
+        private final long totalLogTime;
+        private final long written;
+        private final long totalWriteTime;
+        private final long dropped;
+        private final long failed;
+
+        private Stats() {
+            uptime = (System.nanoTime() - startNanos) / 1e9;
+            long l = 0, s = 0, t = 0;
+            for (int i = 0; i < LEVELS; i++) {
+                logged[i] = loggedItems.get(i);
+                skipped[i] = skippedItems.get(i);
+                logTimeP99[i] = logTimes[i].getPercentile(99);
+                l += logged[i];
+                s += skipped[i];
+                t += logTimes[i].getSum();
+            }
+            totalLogged = l;
+            totalSkipped = s;
+            totalLogTime = t;
+            written = writtenItems;
+            totalWriteTime = writeTime.getSum();
+            dropped = droppedItems.get();
+            failed = failedItems;
+        }
+
+        /**
+         * @return Seconds since DebugLogger was first used.
+         */
+        public double getUptime() {
+            return uptime;
+        }
+
+        /**
+         * @param level A log level from LVL_ERROR to LVL_STREAM.
+         * @return The number of times log() was called at that level.
+         */
+        public long getLogged(int level) {
+            return logged[levelIndex(level)];
+        }
+
+        /**
+         * @param level A log level from LVL_ERROR to LVL_STREAM.
+         * @return The number of messages at that level that were not printed
+         *         to the console.
+         */
+        public long getSkipped(int level) {
+            return skipped[levelIndex(level)];
+        }
+
+        /**
+         * @param level A log level from LVL_ERROR to LVL_STREAM.
+         * @return The 99th percentile time log() took at that level, in
+         *         nanoseconds.
+         */
+        public long getLogTimeP99(int level) {
+            return logTimeP99[levelIndex(level)];
+        }
+
+        /**
+         * @return The number of times log() was called at any level.
+         */
+        public long getTotalLogged() {
+            return totalLogged;
+        }
+
+        /**
+         * @return The number of messages that were not printed to the console.
+         */
+        public long getTotalSkipped() {
+            return totalSkipped;
+        }
+
+        /**
+         * @return The total time spent in log() on calling threads, in
+         *         nanoseconds.
+         */
+        public long getTotalLogTime() {
+            return totalLogTime;
+        }
+
+        /**
+         * @return The number of messages the writer thread has written.
+         */
+        public long getWritten() {
+            return written;
+        }
+
+        /**
+         * @return The total time the writer thread has spent writing, in
+         *         nanoseconds.
+         */
+        public long getTotalWriteTime() {
+            return totalWriteTime;
+        }
+
+        /**
+         * @return The number of messages dropped because the buffer was full.
+         */
+        public long getDropped() {
+            return dropped;
+        }
+
+        /**
+         * @return The number of messages that threw an exception while being
+         *         written, e.g. from their tag's toString().
+         */
+        public long getFailed() {
+            return failed;
+        }
+
+        /**
+         * @return The average number of calls to log() per second since
+         *         DebugLogger was first used.
+         */
+        public double getMessagesPerSecond() {
+            return uptime > 0 ? totalLogged / uptime : 0;
+        }
+    }
+
     private DebugLogger() {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,39 @@
+package com.milkenknights.common;
+
+/**
+ * Measures how long DebugLogger.log() keeps the calling thread, which is the
+ * part that runs in the control loop: claiming a slot in the ring buffer,
+ * filling it in and handing it to the writer thread. The writer thread runs
+ * as it does on the robot, but its console output is thrown away.
+ * <p>
+ * The calling thread logs much faster than the writer can print, so most
+ * messages find the ring full and are dropped; the number dropped is printed
+ * too. Fails if log() allocates anything. See Benchmark for how to run it.
+ * The binary log is written to Constants.DEBUG_LOGGER.BINARY_LOG_DIR if that
+ * directory can be created.
+ */
+public class DebugLoggerBenchmark {
+    public static void main(String[] args) {
+        Benchmark.quietSystemOut();
+
+        final double[] value = new double[1];
+        Benchmark.Result text = Benchmark.run("DebugLogger.log(), text", 1000000,
+                () -> DebugLogger.log(DebugLogger.LVL_DEBUG, "Benchmark",
+                        "A message with no arguments"));
+        Benchmark.checkNoAllocation(text, "DebugLogger.log() with text");
+
+        Benchmark.Result number = Benchmark.run("DebugLogger.log(), one number",
+                1000000, () -> DebugLogger.log(DebugLogger.LVL_DEBUG,
+                        "Benchmark", "Value is {}", value[0]++));
+        Benchmark.checkNoAllocation(number, "DebugLogger.log() with a number");
+
+        // let the writer catch up so that every message is accounted for
+        DebugLogger.flush(10);
+        DebugLogger.Stats stats = DebugLogger.getStats();
+        Benchmark.print(stats.getTotalLogged() + " messages logged, "
+                + stats.getWritten() + " written, "
+                + DebugLogger.getDroppedCount() + " dropped");
+
+        Benchmark.finish();
+    }
+}
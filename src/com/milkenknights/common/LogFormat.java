@@ -0,0 +1,69 @@
+package com.milkenknights.common;
+
+/**
+ * Formatting shared by DebugLogger and BinaryLogDecoder, so that decoded logs
+ * read the same as the console. This is kept out of DebugLogger so that the
+ * decoder doesn't start DebugLogger's writer thread.
+ */
+final class LogFormat {
+    /**
+     * @param level A log level.
+     * @return The label that is printed for that level.
+     */
+    static String levelLabel(int level) {
+        String strLv = "  [UNKN]";
+        if (level <= 0)
+            strLv = "[**ERROR" + Math.abs(level) + "]";
+        if (level == 1)
+            strLv = "[SEVERE]";
+        if (level == 2)
+            strLv = "  [WARN]";
+        if (level == 3)
+            strLv = "  [INFO]";
+        if (level == 4)
+            strLv = " [DEBUG]";
+        if (level == 5)
+            strLv = "[STREAM]";
+        return strLv;
+    }
+
+    /**
+     * Append a logged message to sb. Each "{}" in text is replaced by the next
+     * argument. Arguments left over after every "{}" has been used are added
+     * to the end.
+     */
+    static void appendMessage(StringBuilder sb, String text, double[] args,
+            int argCount) {
+        text = String.valueOf(text);
+        int next = 0;
+        int start = 0;
+        while (next < argCount) {
+            int i = text.indexOf("{}", start);
+            if (i < 0) {
+                break;
+            }
+            sb.append(text, start, i);
+            appendNumber(sb, args[next++]);
+            start = i + 2;
+        }
+        sb.append(text, start, text.length());
+        for (; next < argCount; next++) {
+            sb.append(' ');
+            appendNumber(sb, args[next]);
+        }
+    }
+
+    /**
+     * Append a number, leaving off the ".0" if it is a whole number.
+     */
+    private static void appendNumber(StringBuilder sb, double n) {
+        if (n == Math.rint(n) && Math.abs(n) < 1e15) {
+            sb.append((long) n);
+        } else {
+            sb.append(n);
+        }
+    }
+
+    private LogFormat() {
+    }
+}
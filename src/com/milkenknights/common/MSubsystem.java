@@ -1,10 +1,40 @@
 package com.milkenknights.common;
 
 /**
+ * A part of the robot. Every loop, each subsystem is run in phases:
+ * <ol>
+ * <li>readInputs() reads every sensor the subsystem uses, once, and caches the
+ * values. Getters should return these cached values instead of reading the
+ * hardware again.</li>
+ * <li>compute() works out what the outputs should be from the cached inputs
+ * and the current setpoints. It should not touch any hardware.</li>
+ * <li>writeOutputs() sends the computed outputs to the motors and
+ * solenoids.</li>
+ * <li>updateTelemetry() puts values on the dashboard.</li>
+ * </ol>
+ * Each phase runs for every subsystem before the next phase starts.
  *
  * @author Daniel
  */
 public abstract class MSubsystem {
+    /** The running AutonomousAction that is driving this subsystem, if any. */
+    private AutonomousAction owner;
+    
+    /**
+     * Get the AutonomousAction that is currently driving this subsystem.
+     * 
+     * @return The owning action, or null if no running action requires this
+     *         subsystem.
+     * @see AutonomousAction#requires(MSubsystem)
+     */
+    public AutonomousAction getOwner() {
+        return owner;
+    }
+    
+    void setOwner(AutonomousAction owner) {
+        this.owner = owner;
+    }
+    
     /**
      * This function will be run during teleopInit()
      */
@@ -13,9 +43,45 @@ public abstract class MSubsystem {
     }
     
     /**
-     * This function will be run periodically
+     * Read every sensor this subsystem uses and cache the values for the rest
+     * of the loop. This will be run periodically.
+     */
+    public void readInputs() {
+        
+    }
+    
+    /**
+     * Work out this subsystem's outputs from the inputs cached by
+     * readInputs(). This will be run periodically, after every subsystem has
+     * read its inputs.
+     */
+    public void compute() {
+        
+    }
+    
+    /**
+     * Send the outputs worked out by compute() to the hardware. This will be
+     * run periodically, after every subsystem has run compute().
+     */
+    public void writeOutputs() {
+        
+    }
+    
+    /**
+     * Run readInputs(), compute() and writeOutputs() for just this subsystem.
      */
     public void update() {
+        readInputs();
+        compute();
+        writeOutputs();
+    }
+    
+    /**
+     * This function will be run periodically, after every subsystem has been
+     * updated. Dashboard output belongs here so it stays out of the way of
+     * the code that controls the robot.
+     */
+    public void updateTelemetry() {
         
     }
 }
@@ -0,0 +1,67 @@
+package com.milkenknights.common;
+
+/**
+ * Where the robot is on the field. Poses are filled in by PoseEstimator, so
+ * one object can be made up front and reused every loop.
+ * <p>
+ * x is forward and y is to the right of the direction the robot faced when
+ * the pose was last reset. The heading is in degrees, clockwise, like the
+ * gyro's yaw.
+ */
+public class Pose {
+    /** Distance forward, in inches. */
+    public double x;
+    /** Distance to the right, in inches. */
+    public double y;
+    /** Heading in degrees, from -180 to 180. */
+    public double heading;
+    /** When the robot was here, in seconds (see Timer.getFPGATimestamp()). */
+    public double timestamp;
+
+    /**
+     * Wrap an angle to between -180 and 180 degrees. Unlike a plain % 360,
+     * this works for negative angles too.
+     *
+     * @param degrees The angle to wrap.
+     * @return The same angle, between -180 and 180.
+     */
+    public static double wrapDegrees(double degrees) {
+        degrees %= 360;
+        if (degrees > 180) {
+            degrees -= 360;
+        } else if (degrees < -180) {
+            degrees += 360;
+        }
+        return degrees;
+    }
+
+    /**
+     * Copy another pose into this one.
+     *
+     * @param other The pose to copy.
+     */
+    public void set(Pose other) {
+        x = other.x;
+        y = other.y;
+        heading = other.heading;
+        timestamp = other.timestamp;
+    }
+
+    /**
+     * @param targetX The x coordinate of a point, in inches.
+     * @param targetY The y coordinate of a point, in inches.
+     * @return The distance from this pose to the point, in inches.
+     */
+    public double distanceTo(double targetX, double targetY) {
+        return Math.hypot(targetX - x, targetY - y);
+    }
+
+    /**
+     * @param targetX The x coordinate of a point, in inches.
+     * @param targetY The y coordinate of a point, in inches.
+     * @return The heading that faces the point from this pose, in degrees.
+     */
+    public double headingTo(double targetX, double targetY) {
+        return Math.toDegrees(Math.atan2(targetY - y, targetX - x));
+    }
+}
@@ -0,0 +1,201 @@
+package com.milkenknights.common;
+
+/**
+ * Works out the robot's position on the field by dead reckoning: every loop,
+ * the distance driven since the last loop is added along the robot's
+ * heading.
+ * <p>
+ * The distance comes from a drive encoder and the heading from the gyro.
+ * Each step is taken along the average of the previous and current heading,
+ * so turning while driving doesn't make the pose lag behind.
+ * <p>
+ * The last few poses are kept with their timestamps, so getPoseAt() can find
+ * where the robot was when e.g. a camera image was taken. Nothing is
+ * allocated after construction.
+ * <p>
+ * This is not thread safe. DriveSubsystem updates it from
+ * Subsystems.update(), and other threads only use it while holding the
+ * subsystems lock.
+ */
+public class PoseEstimator {
+    private final Pose pose = new Pose();
+
+    // history of poses, oldest first starting at historyStart
+    private final double[] historyTime;
+    private final double[] historyX;
+    private final double[] historyY;
+    private final double[] historyHeading;
+    private int historyStart;
+    private int historySize;
+
+    /** The encoder distance and gyro yaw at the last update. */
+    private double lastDistance;
+    private double lastYaw;
+    private boolean started;
+    /** What to add to the gyro yaw to get the pose heading. */
+    private double headingOffset;
+
+    /**
+     * @param historyLength How many past poses to keep for getPoseAt().
+     */
+    public PoseEstimator(int historyLength) {
+        if (historyLength < 1) {
+            throw new IllegalArgumentException("historyLength must be at least 1");
+        }
+        historyTime = new double[historyLength];
+        historyX = new double[historyLength];
+        historyY = new double[historyLength];
+        historyHeading = new double[historyLength];
+    }
+
+    /**
+     * Move the robot along its heading by however far the encoder has gone
+     * since the last update.
+     * <p>
+     * The timestamp should be when the gyro took the yaw sample, so that
+     * getPoseAt() isn't off by the gyro's latency. The gyro usually updates
+     * less often than the control loop runs, so several updates can share a
+     * timestamp. Those updates replace the newest pose in the history
+     * instead of adding another one.
+     *
+     * @param timestamp When the yaw was sampled, in seconds.
+     * @param distance The encoder distance, in inches.
+     * @param yaw The gyro yaw, in degrees.
+     */
+    public void update(double timestamp, double distance, double yaw) {
+        if (!started) {
+            started = true;
+            lastDistance = distance;
+            lastYaw = yaw;
+            headingOffset = Pose.wrapDegrees(pose.heading - yaw);
+        }
+
+        double step = distance - lastDistance;
+        double midYaw = lastYaw + Pose.wrapDegrees(yaw - lastYaw) / 2;
+        double midHeading = Math.toRadians(midYaw + headingOffset);
+        pose.x += step * Math.cos(midHeading);
+        pose.y += step * Math.sin(midHeading);
+        pose.heading = Pose.wrapDegrees(yaw + headingOffset);
+        pose.timestamp = timestamp;
+        lastDistance = distance;
+        lastYaw = yaw;
+
+        int newest = (historyStart + historySize - 1) % historyTime.length;
+        if (historySize > 0 && timestamp <= historyTime[newest]) {
+            // no new gyro sample since the last update
+            historyX[newest] = pose.x;
+            historyY[newest] = pose.y;
+            historyHeading[newest] = pose.heading;
+            return;
+        }
+
+        int i = (historyStart + historySize) % historyTime.length;
+        if (historySize == historyTime.length) {
+            historyStart = (historyStart + 1) % historyTime.length;
+        } else {
+            historySize++;
+        }
+        historyTime[i] = timestamp;
+        historyX[i] = pose.x;
+        historyY[i] = pose.y;
+        historyHeading[i] = pose.heading;
+    }
+
+    /**
+     * Put the robot at a known position. The history is cleared.
+     *
+     * @param x The robot's x coordinate, in inches.
+     * @param y The robot's y coordinate, in inches.
+     * @param heading The robot's heading, in degrees.
+     */
+    public void reset(double x, double y, double heading) {
+        pose.x = x;
+        pose.y = y;
+        pose.heading = Pose.wrapDegrees(heading);
+        // the next update only records the readings to measure from
+        started = false;
+        historySize = 0;
+    }
+
+    /**
+     * Tell the estimator that the encoder was reset, so that the jump in
+     * distance isn't counted as driving.
+     *
+     * @param distance The encoder distance after the reset, in inches.
+     */
+    public void rebaseDistance(double distance) {
+        lastDistance = distance;
+    }
+
+    /**
+     * Tell the estimator that the gyro was zeroed, so that the pose heading
+     * stays where it was rather than jumping.
+     *
+     * @param yaw The gyro yaw after zeroing, in degrees.
+     */
+    public void rebaseYaw(double yaw) {
+        headingOffset = Pose.wrapDegrees(pose.heading - yaw);
+        lastYaw = yaw;
+    }
+
+    /**
+     * @param out Where to put the latest pose.
+     */
+    public void getPose(Pose out) {
+        out.set(pose);
+    }
+
+    /**
+     * Find where the robot was at a moment in the recent past, interpolating
+     * between the updates on either side of it. Times before the oldest pose
+     * kept give the oldest pose, and times after the latest update give the
+     * latest pose.
+     *
+     * @param timestamp The time, in seconds.
+     * @param out Where to put the pose.
+     */
+    public void getPoseAt(double timestamp, Pose out) {
+        if (historySize == 0) {
+            out.set(pose);
+            return;
+        }
+        int n = historyTime.length;
+        int newest = (historyStart + historySize - 1) % n;
+        if (timestamp >= historyTime[newest]) {
+            copyHistory(newest, out);
+            return;
+        }
+        if (timestamp <= historyTime[historyStart]) {
+            copyHistory(historyStart, out);
+            return;
+        }
+
+        // binary search for the last pose at or before timestamp
+        int lo = 0;
+        int hi = historySize - 1;
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            if (historyTime[(historyStart + mid) % n] <= timestamp) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        int a = (historyStart + lo) % n;
+        int b = (historyStart + hi) % n;
+        double f = (timestamp - historyTime[a])
+                / (historyTime[b] - historyTime[a]);
+        out.x = historyX[a] + (historyX[b] - historyX[a]) * f;
+        out.y = historyY[a] + (historyY[b] - historyY[a]) * f;
+        out.heading = Pose.wrapDegrees(historyHeading[a]
+                + Pose.wrapDegrees(historyHeading[b] - historyHeading[a]) * f);
+        out.timestamp = timestamp;
+    }
+
+    private void copyHistory(int i, Pose out) {
+        out.x = historyX[i];
+        out.y = historyY[i];
+        out.heading = historyHeading[i];
+        out.timestamp = historyTime[i];
+    }
+}
@@ -0,0 +1,237 @@
+package com.milkenknights.common;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.milkenknights.frc2015.Constants;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Puts values on the SmartDashboard without making the control loop wait on
+ * NetworkTables.
+ *
+ * Each value gets an entry, which should be made once (e.g. in a
+ * constructor):
+ * <pre>
+ * private final Telemetry.NumberEntry distance =
+ *         Telemetry.number("Drive Distance");
+ * </pre>
+ * Setting an entry only stores the value in a preallocated table, which is
+ * cheap and never allocates. A background thread started by start() checks
+ * the table every Constants.TELEMETRY.PERIOD seconds and sends the values
+ * that changed to the SmartDashboard.
+ *
+ * If Constants.TELEMETRY.ENABLED is false, setting an entry puts the value on
+ * the SmartDashboard right away instead.
+ */
+public class Telemetry {
+    private static final int CAPACITY = Constants.TELEMETRY.MAX_ENTRIES;
+
+    private static final byte TYPE_NUMBER = 0;
+    private static final byte TYPE_BOOLEAN = 1;
+    private static final byte TYPE_STRING = 2;
+
+    private static final String[] keys = new String[CAPACITY];
+    private static final byte[] types = new byte[CAPACITY];
+    /**
+     * The latest value of each number and boolean entry. Numbers are stored
+     * with Double.doubleToRawLongBits() so that they can't tear on 32 bit
+     * processors. Booleans are 0 or 1.
+     */
+    private static final AtomicLongArray values = new AtomicLongArray(CAPACITY);
+    /** The latest value of each string entry. */
+    private static final AtomicReferenceArray<String> strings =
+            new AtomicReferenceArray<String>(CAPACITY);
+    private static volatile int entryCount;
+
+    // only used by the publisher thread
+    private static final long[] publishedValues = new long[CAPACITY];
+    private static final String[] publishedStrings = new String[CAPACITY];
+    private static final boolean[] published = new boolean[CAPACITY];
+
+    private static Thread thread;
+    private static volatile long publishCount;
+
+    /** A number on the SmartDashboard. */
+    public static class NumberEntry {
+        private final int slot;
+
+        private NumberEntry(int slot) {
+            this.slot = slot;
+        }
+
+        /**
+         * @param value The new value to show.
+         */
+        public void set(double value) {
+            if (!Constants.TELEMETRY.ENABLED) {
+                SmartDashboard.putNumber(keys[slot], value);
+                return;
+            }
+            values.lazySet(slot, Double.doubleToRawLongBits(value));
+        }
+    }
+
+    /** A boolean on the SmartDashboard. */
+    public static class BooleanEntry {
+        private final int slot;
+
+        private BooleanEntry(int slot) {
+            this.slot = slot;
+        }
+
+        /**
+         * @param value The new value to show.
+         */
+        public void set(boolean value) {
+            if (!Constants.TELEMETRY.ENABLED) {
+                SmartDashboard.putBoolean(keys[slot], value);
+                return;
+            }
+            values.lazySet(slot, value ? 1 : 0);
+        }
+    }
+
+    /** A string on the SmartDashboard. */
+    public static class StringEntry {
+        private final int slot;
+
+        private StringEntry(int slot) {
+            this.slot = slot;
+        }
+
+        /**
+         * Set the string to show. Changes are detected by reference, so
+         * passing the same String object (e.g. an enum's name()) again is
+         * free.
+         *
+         * @param value The new value to show.
+         */
+        public void set(String value) {
+            if (!Constants.TELEMETRY.ENABLED) {
+                SmartDashboard.putString(keys[slot], value);
+                return;
+            }
+            strings.lazySet(slot, value);
+        }
+    }
+
+    private static synchronized int addEntry(String key, byte type) {
+        int count = entryCount;
+        for (int i = 0; i < count; i++) {
+            if (keys[i].equals(key)) {
+                throw new IllegalArgumentException("Telemetry key \"" + key
+                        + "\" is already in use");
+            }
+        }
+        if (count == CAPACITY) {
+            throw new IllegalArgumentException("Too many telemetry entries "
+                    + "(more than " + CAPACITY + ")");
+        }
+        keys[count] = key;
+        types[count] = type;
+        // publishing the count makes the key and type visible to the
+        // publisher thread
+        entryCount = count + 1;
+        return count;
+    }
+
+    /**
+     * Make a new number entry. It shows 0 until it is set.
+     *
+     * @param key The SmartDashboard key.
+     * @return The new entry.
+     */
+    public static NumberEntry number(String key) {
+        return new NumberEntry(addEntry(key, TYPE_NUMBER));
+    }
+
+    /**
+     * Make a new boolean entry. It shows false until it is set.
+     *
+     * @param key The SmartDashboard key.
+     * @return The new entry.
+     */
+    public static BooleanEntry bool(String key) {
+        return new BooleanEntry(addEntry(key, TYPE_BOOLEAN));
+    }
+
+    /**
+     * Make a new string entry. Nothing is shown until the entry is set.
+     *
+     * @param key The SmartDashboard key.
+     * @return The new entry.
+     */
+    public static StringEntry string(String key) {
+        return new StringEntry(addEntry(key, TYPE_STRING));
+    }
+
+    /**
+     * Start the thread that publishes entries. Calling this more than once
+     * does nothing.
+     */
+    public static synchronized void start() {
+        if (!Constants.TELEMETRY.ENABLED || thread != null) {
+            return;
+        }
+        thread = new Thread(Telemetry::run, "Telemetry");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void run() {
+        long periodMillis = (long) (Constants.TELEMETRY.PERIOD * 1000);
+        while (true) {
+            try {
+                Thread.sleep(periodMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            publish();
+        }
+    }
+
+    /**
+     * Send every entry that changed since the last call to the SmartDashboard.
+     * This is called by the publisher thread.
+     */
+    private static void publish() {
+        int count = entryCount;
+        for (int i = 0; i < count; i++) {
+            if (types[i] == TYPE_STRING) {
+                String s = strings.get(i);
+                if (s != null && s != publishedStrings[i]) {
+                    SmartDashboard.putString(keys[i], s);
+                    publishedStrings[i] = s;
+                }
+                continue;
+            }
+
+            long bits = values.get(i);
+            if (published[i] && bits == publishedValues[i]) {
+                continue;
+            }
+            if (types[i] == TYPE_NUMBER) {
+                SmartDashboard.putNumber(keys[i], Double.longBitsToDouble(bits));
+            } else {
+                SmartDashboard.putBoolean(keys[i], bits != 0);
+            }
+            publishedValues[i] = bits;
+            published[i] = true;
+        }
+        publishCount++;
+    }
+
+    /**
+     * @return The number of times the publisher thread has checked for changed
+     *         entries.
+     */
+    public static long getPublishCount() {
+        return publishCount;
+    }
+
+    private Telemetry() {
+    }
+}
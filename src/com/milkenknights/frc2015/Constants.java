@@ -7,6 +7,24 @@ public class Constants {
         public static final int     DEFAULT_LOGLEVEL = 5; //Controls the standard logging level for the DebugLog
         public static final int     INFO_DISPLAYFREQ = 100; //Controls how often the DebugLog displays diagnostic information
         public static final boolean INTRO_MESSAGE = true; //Whether to display the welcome message
+        public static final int     BUFFER_SIZE = 1024; //Messages that can wait for the writer thread before new ones are dropped (power of two)
+        public static final boolean BINARY_LOG_ENABLED = true; //Also records messages to binary files that BinaryLogDecoder can read
+        public static final int     BINARY_LOG_LEVEL = 5; //Highest level written to the binary log, independent of the console level
+        public static final String  BINARY_LOG_DIR = "/home/lvuser/logs"; //Where the binary log files go
+        public static final int     BINARY_LOG_FILE_SIZE = 4 << 20; //Bytes per binary log file before starting a new one
+        public static final int     BINARY_LOG_FILE_COUNT = 16; //Binary log files kept before the oldest are deleted
+    }
+    
+    public class CONTROL_LOOP {
+        public static final boolean ENABLED = true; //Runs Subsystems.update() on its own fixed rate thread
+        public static final double  PERIOD = 0.005; //Seconds between control loop iterations (200 Hz)
+        public static final boolean PROFILE_SUBSYSTEMS = true; //Times every MSubsystem.update() call
+    }
+    
+    public class TELEMETRY {
+        public static final boolean ENABLED = true; //Publishes dashboard values from a background thread instead of the control loop
+        public static final double  PERIOD = 0.1; //Seconds between publishing changed values (10 Hz)
+        public static final int     MAX_ENTRIES = 128; //Size of the preallocated telemetry table
     }
     
     public class CAN {
@@ -28,6 +46,7 @@ public class Constants {
     
     public class SERIAL {
         public static final int     BAUD_RATE = 9600;
+        public static final double  ARDUINO_PERIOD = 0.5; //Seconds between status messages to the Arduino
     }
     
     public class ANALOG {
@@ -77,6 +96,14 @@ public class Constants {
     
     public class GYRO {
         public static final int     IMU_BAUD_RATE = 57600;
+        public static final boolean USE_NAVX_AHRS = false; //Reads the navX-MXP's binary AHRS stream instead of nav6 ASCII yaw/pitch/roll updates
+        public static final boolean USE_IMU_ADVANCED = false; //Opt-in: streams nav6 quaternions for motion detection (WaitForStationary, yaw drift learning); yaw then comes from the quaternions. Off until tested on the robot; ignored with USE_NAVX_AHRS
+        public static final boolean CORRECT_YAW_DRIFT = false; //Opt-in: removes yaw drift learned while stationary. Does nothing without USE_IMU_ADVANCED; off until validated on the robot
+        public static final int     TRANSPORT_SERIAL = 0;
+        public static final int     TRANSPORT_I2C = 1;
+        public static final int     TRANSPORT_SPI = 2;
+        public static final int     TRANSPORT = TRANSPORT_SERIAL; //Bus the gyro is read over; I2C and SPI only work with USE_NAVX_AHRS, and are untested on a real navX-MXP
+        public static final int     SPI_CLOCK_RATE = 500000; //Hz, at most 2 MHz
         public static final double  MAXIMUM_INPUT = 180;
         public static final double  MINIMUM_INPUT = -180;
     }
@@ -87,6 +114,11 @@ public class Constants {
         public static final double  STRAIGHT_D = 0.0095;
         public static final double  STRAIGHT_F = 0.18;
         public static final double  PIVOT_P = 0.048;
+        public static final int     POSE_HISTORY_LENGTH = 200; //Past poses kept for looking up where the robot was (1 second at 200 Hz)
+        public static final double  POSE_MAX_GYRO_AGE = 0.1; //Seconds; older gyro samples are treated as current when timing poses
+        public static final double  POINT_TOLERANCE = 2; //Default inches from a target point that count as there
+        public static final double  POINT_ANGLE_TOLERANCE = 5; //Default degrees off a target point's heading before driving towards it
+        public static final double  AIM_DISTANCE = 24; //Inches from a target point beyond which driving to it keeps re-aiming at it
     }
     
     public class ELEVATOR {
@@ -1,11 +1,12 @@
 package com.milkenknights.frc2015;
 
+import com.milkenknights.common.ControlLoop;
 import com.milkenknights.common.RestrictedSolenoid;
+import com.milkenknights.common.Telemetry;
 import com.milkenknights.frc2015.controls.DoNothing;
 import com.milkenknights.frc2015.controls.Move50Auto;
 import com.milkenknights.frc2015.controls.ControlSystem;
 import com.milkenknights.frc2015.controls.ThreeToteAuto;
-import com.milkenknights.frc2015.controls.ThreeToteAutoAlt;
 import com.milkenknights.frc2015.controls.TripleATKControl;
 import com.milkenknights.frc2015.subsystems.Subsystems;
 
@@ -20,7 +21,23 @@ public class Robot extends IterativeRobot {
     private ControlSystem teleControlSystem;
     private ControlSystem autoControlSystem;
     
+    /** The autonomous we run, built ahead of time so autonomousInit() is quick. */
+    private ThreeToteAuto threeToteAutoElim;
+    
     private SendableChooser autoChooser;
+    
+    /**
+     * Runs subsystems.update() at a fixed rate. If this is null, the subsystems
+     * are updated from the periodic methods instead.
+     */
+    private ControlLoop controlLoop;
+    
+    private final Telemetry.NumberEntry jitterP99Entry =
+            Telemetry.number("Control Loop Jitter p99 (ms)");
+    private final Telemetry.NumberEntry jitterMaxEntry =
+            Telemetry.number("Control Loop Jitter Max (ms)");
+    private final Telemetry.NumberEntry overrunsEntry =
+            Telemetry.number("Control Loop Overruns");
 
     public void robotInit() {
         RestrictedSolenoid.initPressureSensor(Constants.ANALOG.PRESSURE_TRANSDUCER, 
@@ -31,48 +48,85 @@ public class Robot extends IterativeRobot {
 
         teleControlSystem = new TripleATKControl(subsystems);
         
+        threeToteAutoElim = new ThreeToteAuto(subsystems, ThreeToteAuto.Strategy.ELIM);
+        threeToteAutoElim.compile();
+        
+        // autonomousInit() doesn't use the chooser yet, so only the routine it
+        // does run is compiled ahead of time
         autoChooser = new SendableChooser();
         autoChooser.addDefault("Do Nothing", new DoNothing(subsystems));
         autoChooser.addObject("Drive Forward 50\"", new Move50Auto(subsystems));
         autoChooser.addObject("Three Tote Auto Qual", new ThreeToteAuto(subsystems,
                 ThreeToteAuto.Strategy.QUALS));
-        autoChooser.addObject("Three Tote Auto Elim", new ThreeToteAuto(subsystems,
-                ThreeToteAuto.Strategy.ELIM));
+        autoChooser.addObject("Three Tote Auto Elim", threeToteAutoElim);
         SmartDashboard.putData("Autonomous Selector", autoChooser);
+        
+        Telemetry.start();
+        
+        if (Constants.CONTROL_LOOP.ENABLED) {
+            controlLoop = new ControlLoop("Control Loop", subsystems::update,
+                    Constants.CONTROL_LOOP.PERIOD);
+            controlLoop.start();
+        }
+    }
+    
+    /**
+     * Update the subsystems, unless the control loop is already doing it.
+     */
+    private void updateSubsystems() {
+        subsystems.publishUpdateTimes();
+        
+        if (controlLoop == null) {
+            subsystems.update();
+        } else {
+            jitterP99Entry.set(controlLoop.getJitter().getPercentile(99) / 1e6);
+            jitterMaxEntry.set(controlLoop.getJitter().getMax() / 1e6);
+            overrunsEntry.set(controlLoop.getOverruns());
+        }
     }
 
     public void autonomousInit() {
         //autoControlSystem = (ControlSystem) autoChooser.getSelected();
-        autoControlSystem = new ThreeToteAuto(subsystems, ThreeToteAuto.Strategy.ELIM);
+        autoControlSystem = threeToteAutoElim;
         
         if (autoControlSystem == null) {
             autoControlSystem = new DoNothing(subsystems);
         }
-        autoControlSystem.init();
+        // hold the subsystems lock so the control loop never sees half of a
+        // control system's changes
+        synchronized (subsystems) {
+            autoControlSystem.init();
+        }
         
-        subsystems.update();
+        updateSubsystems();
     }
 
     public void autonomousPeriodic() {
-        autoControlSystem.periodic();
+        synchronized (subsystems) {
+            autoControlSystem.periodic();
+        }
         
-        subsystems.update();
+        updateSubsystems();
     }
 
     public void teleopInit() {
-        teleControlSystem.init();
+        synchronized (subsystems) {
+            teleControlSystem.init();
         
-        subsystems.teleopInit();
+            subsystems.teleopInit();
+        }
     }
 
     public void teleopPeriodic() {
-        teleControlSystem.periodic();
+        synchronized (subsystems) {
+            teleControlSystem.periodic();
+        }
         
-        subsystems.update();
+        updateSubsystems();
     }
     
     public void disabledPeriodic() {
-        subsystems.update();
+        updateSubsystems();
     }
 
     public void testPeriodic() {
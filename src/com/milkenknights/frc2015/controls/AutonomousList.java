@@ -1,12 +1,20 @@
 package com.milkenknights.frc2015.controls;
 
 import java.util.Iterator;
-import java.util.LinkedList;
 
 import com.milkenknights.common.AutonomousAction;
+import com.milkenknights.common.AutonomousAction.CurrentState;
+import com.milkenknights.common.AutonomousPlan;
+import com.milkenknights.common.DebugLogger;
 import com.milkenknights.frc2015.subsystems.Subsystems;
 
 public abstract class AutonomousList extends ControlSystem {
+    /**
+     * The most actions that can be running at once (one in the foreground,
+     * the rest backgrounded).
+     */
+    public static final int MAX_RUNNING_ACTIONS = 16;
+
     protected AutonomousList(Subsystems subsystems) {
         super(subsystems);
     }
@@ -17,57 +25,143 @@ public abstract class AutonomousList extends ControlSystem {
      * @return an iterator of AutonomousActions
      */
     protected abstract Iterator<AutonomousAction> getAutonomousIterator();
-    private Iterator<AutonomousAction> autonomousSequence;
-    
+
+    /** The actions from getAutonomousIterator(), compiled into a table. */
+    private AutonomousPlan plan;
+    /** The index in plan of the next action to start. */
+    private int nextAction;
+
     /**
-     * The list of autonomous actions that are currently running, including
-     * ones that have been backgrounded.
+     * The autonomous actions that are currently running, including ones that
+     * have been backgrounded. Only the first runningCount entries are valid.
+     * This is allocated once so that periodic() never creates garbage.
      */
-    private LinkedList<AutonomousAction> runningActions;
+    private final AutonomousAction[] runningActions =
+            new AutonomousAction[MAX_RUNNING_ACTIONS];
+    private int runningCount;
+
+    /**
+     * True if we wanted to start the next action on an earlier loop but every
+     * running slot was taken.
+     */
+    private boolean startDelayed;
+
+    /**
+     * Turn the actions from getAutonomousIterator() into an AutonomousPlan.
+     * This should be called from robotInit() so that init() doesn't have to
+     * do it when autonomous starts. Calling it more than once does nothing.
+     */
+    public void compile() {
+        if (plan == null) {
+            plan = AutonomousPlan.compile(getAutonomousIterator());
+        }
+    }
 
     public void init() {
-        runningActions = new LinkedList<AutonomousAction>();
-        autonomousSequence = getAutonomousIterator();
+        compile();
+
+        // stop anything left over from the last run before resetting it, so
+        // that its interruptedCode() still runs
+        for (int i = 0; i < runningCount; i++) {
+            runningActions[i].interrupt();
+            runningActions[i] = null;
+        }
+        plan.reset();
+
+        runningCount = 0;
+        startDelayed = false;
+        nextAction = 0;
     }
-    
+
+    /**
+     * Interrupt every running action that drives one of the same subsystems
+     * as a new action, so that the newest action in the list is the only one
+     * writing to a subsystem.
+     * 
+     * @param next The action that is about to start.
+     */
+    private void preemptConflicts(AutonomousAction next) {
+        int kept = 0;
+        for (int i = 0; i < runningCount; i++) {
+            AutonomousAction a = runningActions[i];
+            if (a.conflictsWith(next)) {
+                a.interrupt();
+            } else {
+                runningActions[kept++] = a;
+            }
+        }
+        for (int i = kept; i < runningCount; i++) {
+            runningActions[i] = null;
+        }
+        runningCount = kept;
+    }
+
     public void periodic() {
-        // if this ends up being true at the end of the while loop, start the
-        // next queued AutonomousAction.
+        // if this ends up being true at the end of the loop, start the next
+        // queued AutonomousAction.
         // If runningActions is ever empty (e.g. at the beginning of
-        // autonomous), the while loop will never happen, startNextAction will
-        // stay true, and we will find the next action to add.
-        boolean startNextAction = true;
-        
-        // Loop through the list of currently running actions. We use a manual
-        // ListIterator instead of the syntax shortcut because we need to
-        // remove the element mid-loop when it ends.
-        Iterator<AutonomousAction> i = runningActions.listIterator();
-        while (i.hasNext()) {
-            AutonomousAction a = i.next();
-            startNextAction = false;
-            
+        // autonomous), we will always find the next action to add.
+        boolean startNextAction = startDelayed || runningCount == 0;
+
+        // Loop through the currently running actions. Actions that end are
+        // dropped by compacting the array in place: every action that is
+        // still running gets copied down to index kept.
+        int kept = 0;
+        for (int i = 0; i < runningCount; i++) {
+            AutonomousAction a = runningActions[i];
+            boolean keep = true;
+
+            if (a.getCurrentState() == CurrentState.ENDED) {
+                // another action took one of its subsystems (see
+                // AutonomousAction.takeRequirements()). Drop it, but don't
+                // start the next action until the one that took over ends,
+                // or the two would fight over the subsystem.
+                runningActions[i] = null;
+                continue;
+            }
+
             // run the action and find out what to do next based on its return
             // value.
             switch(a.periodicRun()) {
             case CONTINUE:
                 break;
             case END:
-                i.remove();
+                keep = false;
                 startNextAction = true;
                 break;
             case BACKGROUND:
                 startNextAction = true;
                 break;
             case END_FORK:
-                i.remove();
+                keep = false;
                 break;
             }
+
+            if (keep) {
+                runningActions[kept++] = a;
+            }
+        }
+        for (int i = kept; i < runningCount; i++) {
+            runningActions[i] = null;
         }
-        
-        if (startNextAction && autonomousSequence.hasNext()) {
-            AutonomousAction nextAction = autonomousSequence.next();
-            nextAction.start();
-            runningActions.add(nextAction);
+        runningCount = kept;
+
+        if (startNextAction && nextAction < plan.size()) {
+            if (runningCount >= MAX_RUNNING_ACTIONS) {
+                // wait for a backgrounded action to finish before starting
+                // anything new
+                if (!startDelayed) {
+                    DebugLogger.log(DebugLogger.LVL_WARN, this,
+                            "Too many running actions, delaying next action");
+                }
+                startDelayed = true;
+                return;
+            }
+            startDelayed = false;
+            AutonomousAction a = plan.get(nextAction++);
+            preemptConflicts(a);
+            a.start();
+            runningActions[runningCount++] = a;
         }
     }
 }
@@ -0,0 +1,122 @@
+package com.milkenknights.frc2015.controls;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import com.milkenknights.common.AutonomousAction;
+import com.milkenknights.common.AutonomousPlan;
+import com.milkenknights.common.Benchmark;
+import com.milkenknights.common.MSubsystem;
+
+/**
+ * Measures AutonomousList and AutonomousPlan with a made up routine shaped
+ * like ThreeToteAuto: 40 actions which drive a few pretend subsystems, run
+ * for a few loops each, and sometimes keep running in the background.
+ * <p>
+ * Fails if a loop of AutonomousList.periodic(), or the init() at the start of
+ * autonomous, allocates anything. See Benchmark for how to run it.
+ */
+public class AutonomousListBenchmark {
+    private static final int ACTIONS = 40;
+
+    /** An action that runs for a fixed number of loops. */
+    private static class TimedAction extends AutonomousAction {
+        private final int foregroundLoops;
+        private final int backgroundLoops;
+        private int loops;
+
+        /**
+         * @param subsystem The subsystem this action drives, or null.
+         * @param foregroundLoops Loops to run before ending or backgrounding.
+         * @param backgroundLoops Loops to run in the background, or 0 to end
+         *        without backgrounding.
+         */
+        TimedAction(MSubsystem subsystem, int foregroundLoops,
+                int backgroundLoops) {
+            if (subsystem != null) {
+                requires(subsystem);
+            }
+            this.foregroundLoops = foregroundLoops;
+            this.backgroundLoops = backgroundLoops;
+        }
+
+        @Override
+        protected void startCode() {
+            loops = 0;
+        }
+
+        @Override
+        protected EndState periodicCode() {
+            loops++;
+            if (loops < foregroundLoops) {
+                return EndState.CONTINUE;
+            }
+            if (loops < foregroundLoops + backgroundLoops) {
+                return EndState.BACKGROUND;
+            }
+            return EndState.END;
+        }
+    }
+
+    private static class Routine extends AutonomousList {
+        private final ArrayList<AutonomousAction> actions;
+
+        Routine(ArrayList<AutonomousAction> actions) {
+            super(null);
+            this.actions = actions;
+        }
+
+        @Override
+        protected Iterator<AutonomousAction> getAutonomousIterator() {
+            return actions.iterator();
+        }
+    }
+
+    private static ArrayList<AutonomousAction> makeActions() {
+        MSubsystem[] subsystems = new MSubsystem[] {
+                new MSubsystem() {}, new MSubsystem() {}, new MSubsystem() {}
+        };
+        ArrayList<AutonomousAction> actions = new ArrayList<AutonomousAction>();
+        for (int i = 0; i < ACTIONS; i++) {
+            if (i % 5 == 0) {
+                // like ElevatorMoveBackground: keeps going while the next
+                // actions run
+                actions.add(new TimedAction(null, 2, 25));
+            } else if (i % 5 == 1) {
+                // like IntakeWheelsSet: sets a state and ends right away
+                actions.add(new TimedAction(null, 1, 0));
+            } else {
+                // like PIDStraightAction: drives a subsystem for a while
+                actions.add(new TimedAction(subsystems[i % 3], 8, 0));
+            }
+        }
+        return actions;
+    }
+
+    public static void main(String[] args) {
+        final ArrayList<AutonomousAction> actions = makeActions();
+        final Routine routine = new Routine(actions);
+        routine.compile();
+
+        Benchmark.run("AutonomousPlan.compile(), 40 actions", 10000,
+                () -> AutonomousPlan.compile(actions.iterator()));
+
+        Benchmark.Result init = Benchmark.run("AutonomousList.init()", 100000,
+                routine::init);
+        Benchmark.checkNoAllocation(init, "AutonomousList.init()");
+
+        // run the whole routine from the start every 400 loops, which is
+        // enough for it to finish
+        final int[] loop = new int[1];
+        Benchmark.Result periodic = Benchmark.run(
+                "AutonomousList.periodic(), 40 actions", 400000, () -> {
+                    if (loop[0]++ % 400 == 0) {
+                        routine.init();
+                    }
+                    routine.periodic();
+                });
+        Benchmark.checkNoAllocation(periodic, "AutonomousList.periodic()");
+
+        Benchmark.finish();
+    }
+}
@@ -1,6 +1,7 @@
 package com.milkenknights.frc2015.controls;
 
 import com.milkenknights.common.DebugLogger;
+import com.milkenknights.common.Telemetry;
 import com.milkenknights.frc2015.Constants;
 import com.milkenknights.frc2015.subsystems.DriveSubsystem;
 import com.milkenknights.frc2015.subsystems.ElevatorSubsystem.FlapsState;
@@ -9,7 +10,6 @@ import com.milkenknights.frc2015.subsystems.GroundIntakeSubsystem.WheelsState;
 import com.milkenknights.frc2015.subsystems.Subsystems;
 
 import edu.wpi.first.wpilibj.Joystick;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 /**
  * This control system uses three ATK3 controllers: two for driving and one for
@@ -25,6 +25,9 @@ public class TripleATKControl extends ControlSystem {
     private boolean released9;
     
     private boolean isCheesy;
+    
+    private final Telemetry.NumberEntry elevatorCommandEntry =
+            Telemetry.number("Elevator Command");
 
     public TripleATKControl(Subsystems subsystems) {
         super(subsystems);
@@ -246,7 +249,7 @@ public class TripleATKControl extends ControlSystem {
             break;
         }
         
-        SmartDashboard.putNumber("Elevator Command", elevatorCommand);
+        elevatorCommandEntry.set(elevatorCommand);
     }
 
     @Override
@@ -1,15 +1,30 @@
 package com.milkenknights.frc2015.subsystems;
 
+import com.kauailabs.nav6.IMUTransport;
 import com.kauailabs.nav6.frc.IMU;
+import com.kauailabs.nav6.frc.IMUAdvanced;
+import com.kauailabs.nav6.frc.IMUMotion;
+import com.kauailabs.nav6.frc.IMUOrientation;
+import com.kauailabs.nav6.frc.SerialTransport;
+import com.kauailabs.navx_mxp.AHRS;
+import com.kauailabs.navx_mxp.I2CRegisterIO;
+import com.kauailabs.navx_mxp.RegisterTransport;
+import com.kauailabs.navx_mxp.SPIRegisterIO;
+import com.milkenknights.common.DebugLogger;
 import com.milkenknights.common.MSubsystem;
+import com.milkenknights.common.Pose;
+import com.milkenknights.common.PoseEstimator;
+import com.milkenknights.common.Telemetry;
 import com.milkenknights.frc2015.Constants;
 
 import edu.wpi.first.wpilibj.CANTalon;
 import edu.wpi.first.wpilibj.CANTalon.ControlMode;
 import edu.wpi.first.wpilibj.Encoder;
+import edu.wpi.first.wpilibj.I2C;
 import edu.wpi.first.wpilibj.RobotDrive;
+import edu.wpi.first.wpilibj.SPI;
 import edu.wpi.first.wpilibj.SerialPort;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj.Timer;
 
 /**
  * The subsystem that manages the robot's wheels.
@@ -23,6 +38,16 @@ public class DriveSubsystem extends MSubsystem {
     //Encoder encRight;
 
     IMU gyro;
+    // the same object as gyro if it can detect motion, otherwise null
+    IMUAdvanced motionGyro;
+    private final IMUOrientation orientation = new IMUOrientation();
+    /** When the gyro took the sample that yaw came from, in FPGA seconds. */
+    private double yawTime;
+    private final IMUMotion motion = new IMUMotion();
+
+    private final PoseEstimator poseEstimator =
+            new PoseEstimator(Constants.DRIVE.POSE_HISTORY_LENGTH);
+    private final Pose pose = new Pose();
 
     double leftSpeed;
     double rightSpeed;
@@ -31,6 +56,37 @@ public class DriveSubsystem extends MSubsystem {
     double pidPivotSetpoint;
     
     private double pidLimit = 1;
+    
+    // sensor values, read once per loop by readInputs()
+    private double encDistance;
+    private double encRate;
+    private double yaw;
+    private double stationaryTime;
+    private double yawDriftRate;
+    private double yawDriftConfidence;
+    
+    // outputs worked out by compute(). In PIDSTRAIGHT mode these are the
+    // magnitude and curve passed to RobotDrive.drive() instead.
+    private double leftOutput;
+    private double rightOutput;
+    
+    private final Telemetry.NumberEntry distanceEntry = Telemetry.number("Drive Distance");
+    private final Telemetry.NumberEntry speedEntry = Telemetry.number("Drive Speed");
+    private final Telemetry.NumberEntry yawEntry = Telemetry.number("Gyro Yaw");
+    private final Telemetry.NumberEntry stationaryEntry =
+            Telemetry.number("Gyro Stationary Time");
+    private final Telemetry.NumberEntry driftRateEntry =
+            Telemetry.number("Gyro Drift Rate");
+    private final Telemetry.NumberEntry driftConfidenceEntry =
+            Telemetry.number("Gyro Drift Confidence");
+    private final Telemetry.NumberEntry poseXEntry = Telemetry.number("Pose X");
+    private final Telemetry.NumberEntry poseYEntry = Telemetry.number("Pose Y");
+    private final Telemetry.NumberEntry poseHeadingEntry =
+            Telemetry.number("Pose Heading");
+    private final Telemetry.NumberEntry pivotSetpointEntry = Telemetry.number("Pivot Setpoint");
+    private final Telemetry.StringEntry driveModeEntry = Telemetry.string("Drive Mode");
+    private final Telemetry.NumberEntry straightSetpointEntry =
+            Telemetry.number("Drive Straight Setpoint");
 
     public enum DriveMode {
         TANK, PIDSTRAIGHT, PIDPIVOT
@@ -51,7 +107,21 @@ public class DriveSubsystem extends MSubsystem {
                 Constants.DIO.DRIVE_LEFT_ENCODER_B);
         //encRight = new Encoder(Constants.driveRightEncoderDeviceNumberA, Constants.driveRightEncoderDeviceNumberB);
 
-        gyro = new IMU(new SerialPort(Constants.GYRO.IMU_BAUD_RATE, SerialPort.Port.kMXP));
+        IMUTransport gyroTransport = makeGyroTransport();
+        if (Constants.GYRO.USE_NAVX_AHRS) {
+            gyro = new AHRS(gyroTransport);
+        } else if (Constants.GYRO.USE_IMU_ADVANCED) {
+            motionGyro = new IMUAdvanced(gyroTransport);
+            motionGyro.setYawDriftCorrectionEnabled(
+                    Constants.GYRO.CORRECT_YAW_DRIFT);
+            gyro = motionGyro;
+        } else {
+            gyro = new IMU(gyroTransport);
+        }
+        if (Constants.GYRO.CORRECT_YAW_DRIFT && motionGyro == null) {
+            DebugLogger.log(DebugLogger.LVL_WARN, this, "CORRECT_YAW_DRIFT "
+                    + "does nothing without USE_IMU_ADVANCED");
+        }
 
         leftTalonB.changeControlMode(ControlMode.Follower);
         rightTalonB.changeControlMode(ControlMode.Follower);
@@ -222,7 +292,7 @@ public class DriveSubsystem extends MSubsystem {
      * @param setpoint The desired PID angle setpoint, between -180 and 180.
      */
     public void setPivotPIDSetpoint(double setpoint) {
-        pidPivotSetpoint = ((setpoint + 180) % 360) - 180;
+        pidPivotSetpoint = Pose.wrapDegrees(setpoint);
     }
 
     /**
@@ -241,6 +311,8 @@ public class DriveSubsystem extends MSubsystem {
     public void resetStraightPIDPosition() {
         encLeft.reset();
         //encRight.reset();
+        encDistance = 0;
+        poseEstimator.rebaseDistance(0);
     }
 
     /**
@@ -264,7 +336,7 @@ public class DriveSubsystem extends MSubsystem {
      * @return The number of degrees of error
      */
     public double pivotPIDError() {
-        return ((pidPivotSetpoint - gyro.pidGet() + 180) % 360) - 180;
+        return Pose.wrapDegrees(pidPivotSetpoint - yaw);
     }
     
     /**
@@ -272,7 +344,75 @@ public class DriveSubsystem extends MSubsystem {
      * @return The angle that the robot is facing relative to the floor.
      */
     public double getYaw() {
-        return gyro.getYaw();
+        return yaw;
+    }
+
+    /**
+     * Gets how long the gyro has seen the robot sitting still.
+     * @return The time in seconds since the robot stopped moving, or 0 if
+     *         it is moving or the gyro can't detect motion.
+     */
+    public double getStationaryTime() {
+        return stationaryTime;
+    }
+
+    /**
+     * Finds out if the gyro can tell when the robot is moving. This is only
+     * true with Constants.GYRO.USE_IMU_ADVANCED turned on.
+     * @return true if getStationaryTime() means anything.
+     */
+    public boolean canDetectMotion() {
+        return motionGyro != null;
+    }
+
+    /**
+     * Gets where the robot is on the field, as worked out from the encoder
+     * and gyro, as of the gyro's latest sample. See Pose for the coordinate
+     * system.
+     * @param out Where to put the robot's pose.
+     */
+    public void getPose(Pose out) {
+        out.set(pose);
+    }
+
+    /**
+     * Gets where the robot was at a moment in the recent past. Poses are
+     * timed by when the gyro took its sample, not when the loop ran.
+     * @param timestamp The FPGA time, in seconds.
+     * @param out Where to put the robot's pose.
+     */
+    public void getPoseAt(double timestamp, Pose out) {
+        poseEstimator.getPoseAt(timestamp, out);
+    }
+
+    /**
+     * Tells the robot where it is on the field, e.g. at the start of
+     * autonomous.
+     * @param x The robot's x coordinate, in inches.
+     * @param y The robot's y coordinate, in inches.
+     * @param heading The robot's heading, in degrees.
+     */
+    public void resetPose(double x, double y, double heading) {
+        poseEstimator.reset(x, y, heading);
+        updatePose();
+    }
+
+    /**
+     * Add this loop's readings to the pose. The pose is timed by when the gyro
+     * took its sample, so the encoder distance is wound back to that time
+     * using the encoder rate.
+     */
+    private void updatePose() {
+        double now = Timer.getFPGATimestamp();
+        double age = now - yawTime;
+        if (orientation.update_count == 0 || age < 0
+                || age > Constants.DRIVE.POSE_MAX_GYRO_AGE) {
+            // no usable gyro sample time (e.g. the gyro stopped updating)
+            poseEstimator.update(now, encDistance, yaw);
+        } else {
+            poseEstimator.update(yawTime, encDistance - encRate * age, yaw);
+        }
+        poseEstimator.getPose(pose);
     }
 
     /**
@@ -280,22 +420,45 @@ public class DriveSubsystem extends MSubsystem {
      * @return the encoder distance
      */
     public double getEncPosition() {
-        return encLeft.getDistance();
+        return encDistance;
     }
     
     /**
      * Get the (absolute value) speed of the left encoder, in inches per second.
      */
     public double getEncSpeed() {
-        return Math.abs(encLeft.getRate());
+        return Math.abs(encRate);
     }
     
     
+    /**
+     * Connects to the gyro over the bus chosen by Constants.GYRO.TRANSPORT.
+     * The navX-MXP's I2C and SPI pins are on the MXP connector, like its
+     * serial port.
+     * 
+     * @return The transport to read the gyro from.
+     */
+    private static IMUTransport makeGyroTransport() {
+        switch (Constants.GYRO.TRANSPORT) {
+        case Constants.GYRO.TRANSPORT_I2C:
+            return new RegisterTransport(new I2CRegisterIO(I2C.Port.kMXP,
+                    Constants.I2C.NAVX));
+        case Constants.GYRO.TRANSPORT_SPI:
+            return new RegisterTransport(new SPIRegisterIO(SPI.Port.kMXP,
+                    Constants.GYRO.SPI_CLOCK_RATE));
+        default:
+            return new SerialTransport(new SerialPort(
+                    Constants.GYRO.IMU_BAUD_RATE, SerialPort.Port.kMXP));
+        }
+    }
+
     /**
      * Zeroes the yaw of the gyro.
      */
     public void zeroGyroYaw() {
         gyro.zeroYaw();
+        yaw = 0;
+        poseEstimator.rebaseYaw(0);
     }
     
     /**
@@ -319,20 +482,35 @@ public class DriveSubsystem extends MSubsystem {
         }
     }
 
+    public void readInputs() {
+        encDistance = encLeft.getDistance();
+        encRate = encLeft.getRate();
+        gyro.getOrientation(orientation);
+        yaw = orientation.yaw;
+        yawTime = orientation.timestamp;
+        if (motionGyro != null) {
+            motionGyro.getMotion(motion);
+            stationaryTime = motion.stationary_time;
+            yawDriftRate = motion.yaw_drift_rate;
+            yawDriftConfidence = motion.yaw_drift_confidence;
+        }
+        updatePose();
+    }
+
     /**
-     * Updates wheel speeds depending on driveMode (which should be set to the
-     * desired mode with setDriveMode(). This method should be called during
-     * every loop no matter what.
+     * Works out wheel speeds depending on driveMode (which should be set to
+     * the desired mode with setDriveMode().
      */
-    public void update() {
+    public void compute() {
         switch (driveMode) {
         case TANK:
-            drive.tankDrive(leftSpeed, rightSpeed, true);
+            leftOutput = leftSpeed;
+            rightOutput = rightSpeed;
             break;
         case PIDSTRAIGHT:
-            double drive_p = (getStraightPIDSetpoint() - encLeft.pidGet()) *
+            double drive_p = (getStraightPIDSetpoint() - encDistance) *
                     Constants.DRIVE.STRAIGHT_P;
-            double drive_d = -encLeft.getRate() * Constants.DRIVE.STRAIGHT_D;
+            double drive_d = -encRate * Constants.DRIVE.STRAIGHT_D;
             
             double outputMagnitude = drive_p + drive_d;
             
@@ -341,14 +519,15 @@ public class DriveSubsystem extends MSubsystem {
                 curve = -curve;
             }
             
-            double ff = 0;
-            if (encLeft.getRate() >= 0) {
+            double ff;
+            if (encRate >= 0) {
                 ff = Constants.DRIVE.STRAIGHT_F;
-            } else if (encLeft.getRate() < 0) {
+            } else {
                 ff = -Constants.DRIVE.STRAIGHT_F;
             }
             
-            drive.drive(limit(outputMagnitude + ff, pidLimit), curve);
+            leftOutput = limit(outputMagnitude + ff, pidLimit);
+            rightOutput = curve;
             break;
         case PIDPIVOT:
             double m_result = Constants.DRIVE.PIVOT_P * pivotPIDError();
@@ -359,16 +538,39 @@ public class DriveSubsystem extends MSubsystem {
                 m_result = -1;
             }
 
-            drive.tankDrive(m_result, -m_result);
+            leftOutput = m_result;
+            rightOutput = -m_result;
             break;
         }
+    }
+
+    public void writeOutputs() {
+        switch (driveMode) {
+        case TANK:
+            drive.tankDrive(leftOutput, rightOutput, true);
+            break;
+        case PIDSTRAIGHT:
+            drive.drive(leftOutput, rightOutput);
+            break;
+        case PIDPIVOT:
+            drive.tankDrive(leftOutput, rightOutput);
+            break;
+        }
+    }
 
-        SmartDashboard.putNumber("Drive Distance", encLeft.pidGet());
-        SmartDashboard.putNumber("Drive Speed", encLeft.getRate());
+    public void updateTelemetry() {
+        distanceEntry.set(encDistance);
+        speedEntry.set(encRate);
         //SmartDashboard.putNumber("r dist", encRight.pidGet());
-        SmartDashboard.putNumber("Gyro Yaw", gyro.pidGet());
-        SmartDashboard.putNumber("Pivot Setpoint", pidPivotSetpoint);
-        SmartDashboard.putString("Drive Mode", driveMode.toString());
-        SmartDashboard.putNumber("Drive Straight Setpoint", getStraightPIDSetpoint());
+        yawEntry.set(yaw);
+        stationaryEntry.set(stationaryTime);
+        driftRateEntry.set(yawDriftRate);
+        driftConfidenceEntry.set(yawDriftConfidence);
+        poseXEntry.set(pose.x);
+        poseYEntry.set(pose.y);
+        poseHeadingEntry.set(pose.heading);
+        pivotSetpointEntry.set(pidPivotSetpoint);
+        driveModeEntry.set(driveMode.name());
+        straightSetpointEntry.set(getStraightPIDSetpoint());
     }
 }
@@ -1,13 +1,13 @@
 package com.milkenknights.frc2015.subsystems;
 
 import com.milkenknights.common.MSubsystem;
+import com.milkenknights.common.Telemetry;
 import com.milkenknights.frc2015.Constants;
 
 import edu.wpi.first.wpilibj.CANTalon;
 import edu.wpi.first.wpilibj.DigitalInput;
 import edu.wpi.first.wpilibj.Encoder;
 import edu.wpi.first.wpilibj.Solenoid;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 /**
  * The subsystem that controls the elevator.
@@ -33,6 +33,26 @@ public class ElevatorSubsystem extends MSubsystem {
     boolean pidMode = true;
     double setpoint = 0;
     double manSpeed = 0;
+    
+    // sensor values, read once per loop by readInputs()
+    private boolean elevatorZero;
+    private boolean toteLoaded;
+    private double leftDistance;
+    private double rightDistance;
+    private double leftRate;
+    private double rightRate;
+    
+    // outputs worked out by compute()
+    private double leftOutput;
+    private double rightOutput;
+    
+    private final Telemetry.BooleanEntry zeroedEntry = Telemetry.bool("Elevator Zeroed");
+    private final Telemetry.BooleanEntry toteLoadedEntry = Telemetry.bool("Tote Loaded");
+    private final Telemetry.NumberEntry leftDistanceEntry =
+            Telemetry.number("Elevator Left Distance");
+    private final Telemetry.NumberEntry rightDistanceEntry =
+            Telemetry.number("Elevator Right Distance");
+    private final Telemetry.NumberEntry setpointEntry = Telemetry.number("Elevator Setpoint");
 
     public enum FlapsState {
         CLOSED(false), OPEN(true);
@@ -91,7 +111,7 @@ public class ElevatorSubsystem extends MSubsystem {
      * @return the average elevator encoder position.
      */
     public double getPosition() {
-        return (encLeft.getDistance() + encRight.getDistance()) / 2;
+        return (leftDistance + rightDistance) / 2;
     }
 
     /**
@@ -110,6 +130,8 @@ public class ElevatorSubsystem extends MSubsystem {
     public void resetEncoder() {
         encLeft.reset();
         encRight.reset();
+        leftDistance = 0;
+        rightDistance = 0;
     }
 
     /**
@@ -147,7 +169,7 @@ public class ElevatorSubsystem extends MSubsystem {
      * @return If the elevator is zeroed
      */
     public boolean isElevatorZero() {
-        return !hallEffectSensor.get();
+        return elevatorZero;
     }
 
     /**
@@ -156,7 +178,7 @@ public class ElevatorSubsystem extends MSubsystem {
      * @return true if the tote is loaded
      */
     public boolean toteLoaded() {
-        return bannerSensor.get();
+        return toteLoaded;
     }
 
     /**
@@ -209,17 +231,27 @@ public class ElevatorSubsystem extends MSubsystem {
         manSpeed = speed;
     }
 
-    public void update() {
-        if (isElevatorZero()) {
+    public void readInputs() {
+        elevatorZero = !hallEffectSensor.get();
+        toteLoaded = bannerSensor.get();
+        
+        if (elevatorZero) {
             resetEncoder();
         }
+        
+        leftDistance = encLeft.getDistance();
+        rightDistance = encRight.getDistance();
+        leftRate = encLeft.getRate();
+        rightRate = encRight.getRate();
+    }
 
+    public void compute() {
         if (pidMode) {
-            double l_error = (setpoint - encLeft.pidGet());
-            double r_error = (setpoint - encRight.pidGet());
+            double l_error = (setpoint - leftDistance);
+            double r_error = (setpoint - rightDistance);
             
-            double l_speed = setpoint - encLeft.getRate();
-            double r_speed = setpoint - encRight.getRate();
+            double l_speed = setpoint - leftRate;
+            double r_speed = setpoint - rightRate;
             
             double l_p, r_p, l_d, r_d;
             if (strongMode) {
@@ -238,19 +270,25 @@ public class ElevatorSubsystem extends MSubsystem {
             double l_s = limit((r_error - l_error) * Constants.ELEVATOR.STEERING_P, .15);
             double r_s = limit((l_error - r_error) * Constants.ELEVATOR.STEERING_P, .15);
 
-            elevatorTalonLeft.set(l_p + l_d + l_s);
-            elevatorTalonRight.set(-(r_p + r_d + r_s));
+            leftOutput = l_p + l_d + l_s;
+            rightOutput = -(r_p + r_d + r_s);
         } else {
-            elevatorTalonLeft.set(manSpeed);
-            elevatorTalonRight.set(-manSpeed);
+            leftOutput = manSpeed;
+            rightOutput = -manSpeed;
         }
+    }
 
+    public void writeOutputs() {
+        elevatorTalonLeft.set(leftOutput);
+        elevatorTalonRight.set(rightOutput);
         flaps.set(flapsState.b);
+    }
 
-        SmartDashboard.putBoolean("Elevator Zeroed", isElevatorZero());
-        SmartDashboard.putBoolean("Tote Loaded", toteLoaded());
-        SmartDashboard.putNumber("Elevator Left Distance", encLeft.getDistance());
-        SmartDashboard.putNumber("Elevator Right Distance", encRight.getDistance());
-        SmartDashboard.putNumber("Elevator Setpoint", setpoint);
+    public void updateTelemetry() {
+        zeroedEntry.set(isElevatorZero());
+        toteLoadedEntry.set(toteLoaded());
+        leftDistanceEntry.set(leftDistance);
+        rightDistanceEntry.set(rightDistance);
+        setpointEntry.set(setpoint);
     }
 }
\ No newline at end of file
@@ -29,6 +29,10 @@ public class GroundIntakeSubsystem extends MSubsystem {
     private ActuatorsState actuatorsState;
     private WheelsState wheelsState;
     
+    // outputs worked out by compute()
+    private double leftOutput;
+    private double rightOutput;
+    
     public GroundIntakeSubsystem() {
         leftTalon = new CANTalon(Constants.CAN.GROUNDINTAKE_LEFT_TALON);
         rightTalon = new CANTalon(Constants.CAN.GROUNDINTAKE_RIGHT_TALON);
@@ -71,30 +75,34 @@ public class GroundIntakeSubsystem extends MSubsystem {
         return actuatorsState;
     }
     
-    public void update() {
+    public void compute() {
         switch (wheelsState) {
         case INTAKE:
-            leftTalon.set(-Constants.GROUND_INTAKE.INTAKE_SPEED);
-            rightTalon.set(Constants.GROUND_INTAKE.INTAKE_SPEED);
+            leftOutput = -Constants.GROUND_INTAKE.INTAKE_SPEED;
+            rightOutput = Constants.GROUND_INTAKE.INTAKE_SPEED;
             break;
         case OUTPUT:
-            leftTalon.set(Constants.GROUND_INTAKE.INTAKE_SPEED);
-            rightTalon.set(-Constants.GROUND_INTAKE.INTAKE_SPEED);
+            leftOutput = Constants.GROUND_INTAKE.INTAKE_SPEED;
+            rightOutput = -Constants.GROUND_INTAKE.INTAKE_SPEED;
             break;
         case SLOW_INTAKE:
-            leftTalon.set(-Constants.GROUND_INTAKE.INTAKE_SLOW_SPEED);
-            rightTalon.set(Constants.GROUND_INTAKE.INTAKE_SLOW_SPEED);
+            leftOutput = -Constants.GROUND_INTAKE.INTAKE_SLOW_SPEED;
+            rightOutput = Constants.GROUND_INTAKE.INTAKE_SLOW_SPEED;
             break;
         case RIGHT:
-            leftTalon.set(-Constants.GROUND_INTAKE.INTAKE_SPEED);
-            rightTalon.set(-Constants.GROUND_INTAKE.INTAKE_SPEED);
+            leftOutput = -Constants.GROUND_INTAKE.INTAKE_SPEED;
+            rightOutput = -Constants.GROUND_INTAKE.INTAKE_SPEED;
             break;
         default:
-            leftTalon.set(0);
-            rightTalon.set(0);
+            leftOutput = 0;
+            rightOutput = 0;
             break;
         }
-        
+    }
+    
+    public void writeOutputs() {
+        leftTalon.set(leftOutput);
+        rightTalon.set(rightOutput);
         actuators.set(actuatorsState.b);
     }
 }
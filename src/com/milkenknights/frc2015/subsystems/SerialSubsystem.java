@@ -4,19 +4,26 @@
 package com.milkenknights.frc2015.subsystems;
 
 import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
 
 import com.milkenknights.common.DebugLogger;
 import com.milkenknights.common.MSubsystem;
+import com.milkenknights.common.Telemetry;
+import com.milkenknights.frc2015.Constants;
 
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.RobotState;
 import edu.wpi.first.wpilibj.SerialPort;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj.Timer;
 
 /**
  * Data is structured as follows: 0 - Alliance 1 - RobotMode 2 - Auto Step 3 -
  * Ready for HumanPlayer
  *
+ * A message is made every Constants.SERIAL.ARDUINO_PERIOD seconds and handed
+ * to a background thread to send, so the control loop never waits on the
+ * serial port.
+ *
  * @author austinshalit
  *
  */
@@ -26,18 +33,36 @@ public class SerialSubsystem extends MSubsystem {
     private byte[] data = new byte[4];
     private byte autoStep;
     private boolean readyForHumanPlayer;
-    private long cycleCount;
+    private double lastSendTime = Double.NEGATIVE_INFINITY;
+    private boolean sendThisCycle;
+
+    /** The next message for the sender thread, or null if it has sent it. */
+    private volatile String pendingMessage;
+    private final Thread sender;
+    
+    // driver station state, read by readInputs() on cycles that make a
+    // message
+    private boolean redAlliance;
+    private boolean teleopEnabled;
+    private boolean autonomousEnabled;
+    
+    private final Telemetry.StringEntry dataEntry = Telemetry.string("Serial Data");
+    private final Telemetry.BooleanEntry connectedEntry = Telemetry.bool("Arduino Connected");
 
     public SerialSubsystem() {
         try {
             arduino = new SerialPort(9600, SerialPort.Port.kUSB);
         } catch (Exception e) {
             DebugLogger.log(DebugLogger.LVL_WARN, this, "Arduino not connected!");
-            SmartDashboard.putBoolean("Arduino Connected", false);
+            connectedEntry.set(false);
         }
         autoStep = 0;
-        cycleCount = 0;
         readyForHumanPlayer = false;
+
+        sender = new Thread(this::sendLoop, "Arduino");
+        sender.setPriority(Thread.MIN_PRIORITY);
+        sender.setDaemon(true);
+        sender.start();
     }
 
     public void setAutoStep(byte autoStep) {
@@ -49,20 +74,52 @@ public class SerialSubsystem extends MSubsystem {
     }
 
     /**
-     * This function will be run periodically
+     * Sends each message the control loop hands over. writeString() can
+     * block, so this runs on its own thread.
      */
-    public void update() {
-        cycleCount++;
-        if (cycleCount % 25 == 0) {
-            if (DriverStation.getInstance().getAlliance() == DriverStation.Alliance.Red) {
+    private void sendLoop() {
+        while (true) {
+            LockSupport.park();
+            String message = pendingMessage;
+            if (message == null) {
+                continue;
+            }
+            pendingMessage = null;
+
+            try {
+                arduino.writeString(message);
+                connectedEntry.set(true);
+            } catch (Exception e) {
+                DebugLogger.log(DebugLogger.LVL_WARN, this, "Arduino not connected!");
+                connectedEntry.set(false);
+            }
+        }
+    }
+
+    public void readInputs() {
+        // the control loop runs much faster than the Arduino needs updates,
+        // so only make a message every ARDUINO_PERIOD seconds
+        double now = Timer.getFPGATimestamp();
+        sendThisCycle = now - lastSendTime >= Constants.SERIAL.ARDUINO_PERIOD;
+        if (sendThisCycle) {
+            lastSendTime = now;
+            redAlliance = DriverStation.getInstance().getAlliance() == DriverStation.Alliance.Red;
+            teleopEnabled = RobotState.isOperatorControl() && RobotState.isEnabled();
+            autonomousEnabled = RobotState.isAutonomous() && RobotState.isEnabled();
+        }
+    }
+
+    public void compute() {
+        if (sendThisCycle) {
+            if (redAlliance) {
                 data[0] = 1;
             } else {
                 data[0] = 0;
             }
 
-            if (RobotState.isOperatorControl() && RobotState.isEnabled()) {
+            if (teleopEnabled) {
                 data[1] = 2;
-            } else if (RobotState.isAutonomous() && RobotState.isEnabled()) {
+            } else if (autonomousEnabled) {
                 data[1] = 1;
             } else {
                 data[1] = 0;
@@ -70,16 +127,17 @@ public class SerialSubsystem extends MSubsystem {
 
             data[2] = autoStep;
             data[3] = (byte) (readyForHumanPlayer ? 1 : 0);
-            
-            SmartDashboard.putString("Serial Data", Arrays.toString(data));
+        }
+    }
 
-            try {
-                arduino.writeString(Arrays.toString(data) + "\n");
-                SmartDashboard.putBoolean("Arduino Connected", true);
-            } catch (Exception e) {
-                DebugLogger.log(DebugLogger.LVL_WARN, this, "Arduino not connected!");
-                SmartDashboard.putBoolean("Arduino Connected", false);
-            }
+    public void writeOutputs() {
+        if (sendThisCycle) {
+            String message = Arrays.toString(data);
+            dataEntry.set(message);
+
+            // if the last message hasn't gone out yet, this one replaces it
+            pendingMessage = message + "\n";
+            LockSupport.unpark(sender);
         }
     }
 }
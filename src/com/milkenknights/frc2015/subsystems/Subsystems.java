@@ -1,17 +1,33 @@
 package com.milkenknights.frc2015.subsystems;
 
-import java.util.LinkedList;
-
+import com.milkenknights.common.LatencyHistogram;
 import com.milkenknights.common.MSubsystem;
+import com.milkenknights.common.Telemetry;
+import com.milkenknights.frc2015.Constants;
 
 public class Subsystems {
+    private static final boolean PROFILE = Constants.CONTROL_LOOP.PROFILE_SUBSYSTEMS;
     
-    LinkedList<MSubsystem> subsystems;
+    /** Every subsystem, in the order they are updated. */
+    private final MSubsystem[] subsystems;
     
     DriveSubsystem driveSubsystem;
     ElevatorSubsystem elevatorSubsystem;
     GroundIntakeSubsystem groundIntakeSubsystem;
     SerialSubsystem serialSubsystem;
+    
+    /** How long each subsystem's update() takes, in the same order as subsystems. */
+    private LatencyHistogram[] updateTimes;
+    /** Scratch space for adding up each subsystem's time across the phases of one update. */
+    private long[] tickTimes;
+    /** How long update() takes for all of the subsystems together. */
+    private LatencyHistogram totalUpdateTime;
+    /** Dashboard entries for the timings; the last row is for totalUpdateTime. */
+    private Telemetry.NumberEntry[][] updateTimeEntries;
+    private final Telemetry.NumberEntry overrunsEntry =
+            Telemetry.number("Subsystems Update Overruns");
+    /** The number of times update() took longer than one control loop period. */
+    private volatile long updateOverruns;
 
     public Subsystems() {
         driveSubsystem = new DriveSubsystem();
@@ -19,19 +35,157 @@ public class Subsystems {
         groundIntakeSubsystem = new GroundIntakeSubsystem();
         serialSubsystem = new SerialSubsystem();
         
-        subsystems = new LinkedList<MSubsystem>();
-        subsystems.add(driveSubsystem);
-        subsystems.add(elevatorSubsystem);
-        subsystems.add(groundIntakeSubsystem);
-        subsystems.add(serialSubsystem);
+        subsystems = new MSubsystem[] {
+            driveSubsystem,
+            elevatorSubsystem,
+            groundIntakeSubsystem,
+            serialSubsystem
+        };
+        
+        updateTimes = new LatencyHistogram[subsystems.length];
+        tickTimes = new long[subsystems.length];
+        updateTimeEntries = new Telemetry.NumberEntry[subsystems.length + 1][];
+        for (int i = 0; i < subsystems.length; i++) {
+            updateTimes[i] = new LatencyHistogram();
+            updateTimeEntries[i] = makeTimeEntries(subsystems[i].getClass().getSimpleName());
+        }
+        totalUpdateTime = new LatencyHistogram();
+        updateTimeEntries[subsystems.length] = makeTimeEntries("All Subsystems");
     }
     
-    public void update() {
-        subsystems.stream().forEach(s -> s.update());
+    private static Telemetry.NumberEntry[] makeTimeEntries(String name) {
+        return new Telemetry.NumberEntry[] {
+            Telemetry.number(name + " Update p50 (ms)"),
+            Telemetry.number(name + " Update p99 (ms)"),
+            Telemetry.number(name + " Update Max (ms)")
+        };
+    }
+    
+    /**
+     * Update every subsystem. Each phase runs for every subsystem before the
+     * next phase starts: readInputs(), compute(), writeOutputs(), then
+     * updateTelemetry(). This way every sensor is read at about the same
+     * time, and every output is written at about the same time.
+     * 
+     * This is synchronized on this object, so control systems running on
+     * another thread can hold the lock while they change several setpoints at
+     * once.
+     */
+    public synchronized void update() {
+        long loopStart = PROFILE ? System.nanoTime() : 0;
+        
+        if (PROFILE) {
+            for (int i = 0; i < tickTimes.length; i++) {
+                tickTimes[i] = 0;
+            }
+        }
+        
+        for (int i = 0; i < subsystems.length; i++) {
+            long start = startTiming();
+            subsystems[i].readInputs();
+            stopTiming(i, start);
+        }
+        for (int i = 0; i < subsystems.length; i++) {
+            long start = startTiming();
+            subsystems[i].compute();
+            stopTiming(i, start);
+        }
+        for (int i = 0; i < subsystems.length; i++) {
+            long start = startTiming();
+            subsystems[i].writeOutputs();
+            stopTiming(i, start);
+        }
+        for (int i = 0; i < subsystems.length; i++) {
+            long start = startTiming();
+            subsystems[i].updateTelemetry();
+            stopTiming(i, start);
+        }
+        
+        if (PROFILE) {
+            for (int i = 0; i < subsystems.length; i++) {
+                updateTimes[i].record(tickTimes[i]);
+            }
+            
+            long total = System.nanoTime() - loopStart;
+            totalUpdateTime.record(total);
+            if (total > Constants.CONTROL_LOOP.PERIOD * 1e9) {
+                updateOverruns++;
+            }
+        }
+    }
+    
+    private static long startTiming() {
+        return PROFILE ? System.nanoTime() : 0;
+    }
+    
+    /**
+     * Add the time since start to subsystem i's total for this update.
+     */
+    private void stopTiming(int i, long start) {
+        if (PROFILE) {
+            tickTimes[i] += System.nanoTime() - start;
+        }
     }
     
     public void teleopInit() {
-        subsystems.stream().forEach(s -> s.teleopInit());
+        for (int i = 0; i < subsystems.length; i++) {
+            subsystems[i].teleopInit();
+        }
+    }
+    
+    /**
+     * Get the timings of a subsystem, with all of its phases added together
+     * for each loop. These are only
+     * recorded if Constants.CONTROL_LOOP.PROFILE_SUBSYSTEMS is true.
+     * 
+     * @param subsystem One of the subsystems managed by this object
+     * @return The histogram of update() durations, or null if subsystem isn't
+     *         managed by this object
+     */
+    public LatencyHistogram getUpdateTime(MSubsystem subsystem) {
+        for (int i = 0; i < subsystems.length; i++) {
+            if (subsystems[i] == subsystem) {
+                return updateTimes[i];
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * @return The histogram of how long update() takes for every subsystem
+     *         together.
+     */
+    public LatencyHistogram getTotalUpdateTime() {
+        return totalUpdateTime;
+    }
+    
+    /**
+     * @return The number of times update() took longer than one control loop
+     *         period.
+     */
+    public long getUpdateOverruns() {
+        return updateOverruns;
+    }
+    
+    /**
+     * Put the p50, p99 and max update() time of each subsystem on the
+     * dashboard.
+     */
+    public void publishUpdateTimes() {
+        if (!PROFILE) {
+            return;
+        }
+        for (int i = 0; i < updateTimes.length; i++) {
+            putTimes(updateTimeEntries[i], updateTimes[i]);
+        }
+        putTimes(updateTimeEntries[updateTimes.length], totalUpdateTime);
+        overrunsEntry.set(updateOverruns);
+    }
+    
+    private void putTimes(Telemetry.NumberEntry[] entries, LatencyHistogram h) {
+        entries[0].set(h.getPercentile(50) / 1e6);
+        entries[1].set(h.getPercentile(99) / 1e6);
+        entries[2].set(h.getMax() / 1e6);
     }
 
     /**
@@ -0,0 +1,97 @@
+package com.milkenknights.frc2015.subsystems;
+
+import java.util.LinkedList;
+
+import com.milkenknights.common.Benchmark;
+import com.milkenknights.common.MSubsystem;
+import com.milkenknights.common.Telemetry;
+
+/**
+ * Compares the way Subsystems.update() calls its subsystems, a fixed array
+ * walked once per phase, with the LinkedList stream it used to use. The
+ * subsystems are stand-ins with a little arithmetic in each phase and a few
+ * Telemetry entries, since the real ones need robot hardware.
+ * <p>
+ * Also measures Telemetry entries on their own. Fails if the array dispatch
+ * or setting an entry allocates anything. See Benchmark for how to run it.
+ */
+public class SubsystemsBenchmark {
+    /** A subsystem with no hardware, shaped like the real ones. */
+    private static class FakeSubsystem extends MSubsystem {
+        private final Telemetry.NumberEntry outputEntry;
+        private final Telemetry.BooleanEntry onTargetEntry;
+        private double input;
+        private double output;
+
+        FakeSubsystem(String name) {
+            outputEntry = Telemetry.number(name + " Output");
+            onTargetEntry = Telemetry.bool(name + " On Target");
+        }
+
+        @Override
+        public void readInputs() {
+            input += 0.01;
+        }
+
+        @Override
+        public void compute() {
+            output = Math.max(-1, Math.min(1, (10 - input) * 0.1));
+        }
+
+        @Override
+        public void writeOutputs() {
+            if (input > 20) {
+                input = 0;
+            }
+        }
+
+        @Override
+        public void updateTelemetry() {
+            outputEntry.set(output);
+            onTargetEntry.set(Math.abs(output) < 0.05);
+        }
+    }
+
+    public static void main(String[] args) {
+        final MSubsystem[] array = new MSubsystem[] {
+            new FakeSubsystem("Drive"),
+            new FakeSubsystem("Elevator"),
+            new FakeSubsystem("Ground Intake"),
+            new FakeSubsystem("Serial")
+        };
+        final LinkedList<MSubsystem> list = new LinkedList<MSubsystem>();
+        for (MSubsystem s : array) {
+            list.add(s);
+        }
+
+        Benchmark.Result phases = Benchmark.run("MSubsystem[] phase loops", 1000000,
+                () -> {
+                    for (int i = 0; i < array.length; i++) {
+                        array[i].readInputs();
+                    }
+                    for (int i = 0; i < array.length; i++) {
+                        array[i].compute();
+                    }
+                    for (int i = 0; i < array.length; i++) {
+                        array[i].writeOutputs();
+                    }
+                    for (int i = 0; i < array.length; i++) {
+                        array[i].updateTelemetry();
+                    }
+                });
+        Benchmark.checkNoAllocation(phases, "MSubsystem[] phase loops");
+
+        Benchmark.run("LinkedList stream().forEach()", 1000000, () -> {
+            list.stream().forEach(s -> s.update());
+            list.stream().forEach(s -> s.updateTelemetry());
+        });
+
+        final Telemetry.NumberEntry number = Telemetry.number("Benchmark Number");
+        final double[] value = new double[1];
+        Benchmark.Result set = Benchmark.run("Telemetry.NumberEntry.set()", 10000000,
+                () -> number.set(value[0]++));
+        Benchmark.checkNoAllocation(set, "Telemetry.NumberEntry.set()");
+
+        Benchmark.finish();
+    }
+}
@@ -0,0 +1,122 @@
+package com.milkenknights.frc2015.subsystems.autonomous;
+
+import com.milkenknights.common.AutonomousAction;
+import com.milkenknights.common.Pose;
+import com.milkenknights.frc2015.Constants;
+import com.milkenknights.frc2015.subsystems.DriveSubsystem;
+import com.milkenknights.frc2015.subsystems.DriveSubsystem.DriveMode;
+import com.milkenknights.frc2015.subsystems.Subsystems;
+
+/**
+ * An action that turns the robot towards a point on the field and then drives
+ * straight to it using PID. The point is in the coordinates of the drive
+ * subsystem's pose (see DriveSubsystem.resetPose()).
+ *
+ * While the robot is more than Constants.DRIVE.AIM_DISTANCE from the point,
+ * the heading and distance are worked out again every loop, so the robot
+ * corrects for drifting off the line. After that they are left alone so the
+ * robot doesn't swing around as it arrives.
+ */
+public class DriveToPoint extends AutonomousAction {
+    DriveSubsystem driveSubsystem;
+    double x;
+    double y;
+    double speedLimit;
+    double angleTolerance;
+    double tolerance;
+
+    boolean pivoting;
+    Pose pose = new Pose();
+
+    /**
+     * Make a new DriveToPoint with no speed limit and the default tolerances
+     * from Constants.DRIVE. The other settings can be changed by chaining,
+     * e.g.
+     * <pre>
+     * new DriveToPoint(subsystems, 100, 40).speedLimit(0.75).tolerance(3)
+     * </pre>
+     * @param subsystems the robot's subsystems
+     * @param x the x coordinate to drive to, in inches
+     * @param y the y coordinate to drive to, in inches
+     */
+    public DriveToPoint(Subsystems subsystems, double x, double y) {
+        this.driveSubsystem = subsystems.drive();
+        requires(driveSubsystem);
+        this.x = x;
+        this.y = y;
+        this.speedLimit = 1;
+        this.angleTolerance = Constants.DRIVE.POINT_ANGLE_TOLERANCE;
+        this.tolerance = Constants.DRIVE.POINT_TOLERANCE;
+    }
+
+    /**
+     * @param speedLimit the speed limit while driving straight
+     * @return this DriveToPoint, so calls can be chained
+     */
+    public DriveToPoint speedLimit(double speedLimit) {
+        this.speedLimit = speedLimit;
+        return this;
+    }
+
+    /**
+     * @param angleTolerance how close to facing the point we need to be
+     *                       before driving forward, in degrees
+     * @return this DriveToPoint, so calls can be chained
+     */
+    public DriveToPoint angleTolerance(double angleTolerance) {
+        this.angleTolerance = angleTolerance;
+        return this;
+    }
+
+    /**
+     * @param tolerance how close to the point we need to be, in inches
+     * @return this DriveToPoint, so calls can be chained
+     */
+    public DriveToPoint tolerance(double tolerance) {
+        this.tolerance = tolerance;
+        return this;
+    }
+
+    /**
+     * Point the pivot setpoint at the target and set the straight setpoint to
+     * the distance left to it.
+     */
+    void aim() {
+        driveSubsystem.getPose(pose);
+        // the pose's heading may be offset from the gyro's yaw, so turn by
+        // the difference rather than to the heading itself
+        double turn = Pose.wrapDegrees(pose.headingTo(x, y) - pose.heading);
+        driveSubsystem.setPivotPIDSetpoint(driveSubsystem.getYaw() + turn);
+        driveSubsystem.setStraightPIDSetpoint(driveSubsystem.getEncPosition()
+                + pose.distanceTo(x, y), speedLimit);
+    }
+
+    @Override
+    public void startCode() {
+        aim();
+        pivoting = true;
+        driveSubsystem.setDriveMode(DriveMode.PIDPIVOT);
+    }
+
+    @Override
+    public EndState periodicCode() {
+        if (pivoting) {
+            if (driveSubsystem.pidOnTarget(angleTolerance)) {
+                aim();
+                pivoting = false;
+                driveSubsystem.setDriveMode(DriveMode.PIDSTRAIGHT);
+            }
+            return EndState.CONTINUE;
+        }
+
+        driveSubsystem.getPose(pose);
+        if (pose.distanceTo(x, y) > Constants.DRIVE.AIM_DISTANCE) {
+            aim();
+        }
+        if (driveSubsystem.pidOnTarget(tolerance)) {
+            return EndState.END;
+        } else {
+            return EndState.CONTINUE;
+        }
+    }
+}
@@ -20,6 +20,7 @@ public class ElevatorMoveAction extends AutonomousAction {
     public ElevatorMoveAction(Subsystems subsystems,
             double setpoint, double tolerance) {
         this.elevatorSubsystem = subsystems.elevator();
+        requires(elevatorSubsystem);
         this.setpoint = setpoint;
         this.tolerance = tolerance;
     }
@@ -25,6 +25,7 @@ public class ElevatorMoveBackground extends AutonomousAction {
     public ElevatorMoveBackground(Subsystems subsystems,
             double setpoint, double tolerance) {
         this.elevatorSubsystem = subsystems.elevator();
+        requires(elevatorSubsystem);
         this.setpoint = setpoint;
         this.tolerance = tolerance;
     }
@@ -6,7 +6,13 @@ import com.milkenknights.frc2015.subsystems.Subsystems;
 
 import edu.wpi.first.wpilibj.Timer;
 
-/** Background immediately, and outtake ("button 9") after a certain amount of seconds. */
+/**
+ * Background immediately, and outtake ("button 9") after a certain amount of seconds.
+ * 
+ * This requires the drive and intake subsystems, but defers taking them until 0.25 seconds
+ * before the outtake, because it runs for the whole routine. At that point it interrupts
+ * whatever action is driving them.
+ */
 public class OuttakeAtTime extends AutonomousAction {
     Subsystems subsystems;
     double waitTime;
@@ -16,6 +22,9 @@ public class OuttakeAtTime extends AutonomousAction {
     public OuttakeAtTime(Subsystems subsytems, double waitTime) {
         this.subsystems = subsytems;
         this.waitTime = waitTime;
+        requires(subsystems.drive());
+        requires(subsystems.groundIntake());
+        deferRequirements();
     }
 
     @Override
@@ -26,6 +35,9 @@ public class OuttakeAtTime extends AutonomousAction {
     @Override
     protected EndState periodicCode() {
         if (Timer.getFPGATimestamp() - startTime >= waitTime - 0.25) {
+            if (subsystems.drive().getOwner() != this) {
+                takeRequirements();
+            }
             subsystems.groundIntake().setActuators(GroundIntakeSubsystem.ActuatorsState.CLOSED);
             subsystems.drive().setStraightPIDSetpoint(20);
         }
@@ -1,6 +1,7 @@
 package com.milkenknights.frc2015.subsystems.autonomous;
 
 import com.milkenknights.common.AutonomousAction;
+import com.milkenknights.common.Pose;
 import com.milkenknights.frc2015.subsystems.DriveSubsystem;
 import com.milkenknights.frc2015.subsystems.DriveSubsystem.DriveMode;
 import com.milkenknights.frc2015.subsystems.Subsystems;
@@ -22,9 +23,10 @@ public class PIDPivotAction extends AutonomousAction {
     public PIDPivotAction(Subsystems subsystems, double setpoint,
             double tolerance) {
         this.driveSubsystem = subsystems.drive();
+        requires(driveSubsystem);
         
         // bound setpoint between -180 and 180
-        this.setpoint = ((setpoint + 180) % 360) - 180;
+        this.setpoint = Pose.wrapDegrees(setpoint);
         
         this.tolerance = tolerance;
     }
@@ -24,6 +24,7 @@ public class PIDStraightAction extends AutonomousAction {
     public PIDStraightAction(Subsystems subsystems, double setpoint, double speedLimit,
             double tolerance) {
         this.driveSubsystem = subsystems.drive();
+        requires(driveSubsystem);
         this.setpoint = setpoint;
         this.speedLimit = speedLimit;
         this.tolerance = tolerance;
@@ -27,6 +27,7 @@ public class PIDStraightBackground extends AutonomousAction {
     public PIDStraightBackground(Subsystems subsystems, double setpoint, double speedLimit,
             double tolerance) {
         this.driveSubsystem = subsystems.drive();
+        requires(driveSubsystem);
         this.setpoint = setpoint;
         this.speedLimit = speedLimit;
         this.tolerance = tolerance;
@@ -39,6 +39,7 @@ public class PIDTrapezoidal extends AutonomousAction {
             double coastTime, double maxVelocity,
             double tolerance) {
         this.driveSubsystem = subsystems.drive();
+        requires(driveSubsystem);
         
         this.rampUpTime = rampUpTime;
         this.rampDownTime = rampDownTime;
@@ -0,0 +1,37 @@
+package com.milkenknights.frc2015.subsystems.autonomous;
+
+import com.milkenknights.common.AutonomousAction;
+import com.milkenknights.frc2015.subsystems.DriveSubsystem;
+import com.milkenknights.frc2015.subsystems.Subsystems;
+
+/**
+ * A quick autonomous action that tells the drive subsystem where the robot is
+ * on the field, e.g. where it starts.
+ *
+ * @see DriveSubsystem#resetPose(double, double, double)
+ */
+public class ResetPose extends AutonomousAction {
+    DriveSubsystem driveSubsystem;
+    double x;
+    double y;
+    double heading;
+
+    public ResetPose(Subsystems subsystems, double x, double y,
+            double heading) {
+        this.driveSubsystem = subsystems.drive();
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+    }
+
+    @Override
+    public void startCode() {
+        driveSubsystem.resetPose(x, y, heading);
+    }
+
+    @Override
+    public EndState periodicCode() {
+        return EndState.END;
+    }
+
+}
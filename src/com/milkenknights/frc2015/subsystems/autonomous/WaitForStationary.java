@@ -0,0 +1,55 @@
+package com.milkenknights.frc2015.subsystems.autonomous;
+
+import com.milkenknights.common.AutonomousAction;
+import com.milkenknights.frc2015.subsystems.DriveSubsystem;
+import com.milkenknights.frc2015.subsystems.Subsystems;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Waits until the gyro has seen the robot sitting still for a while, e.g.
+ * so that it has settled before zeroing the gyro or starting a pivot.
+ *
+ * Motion detection is opt-in (Constants.GYRO.USE_IMU_ADVANCED). Without it,
+ * this ends right away instead of always waiting for the timeout.
+ */
+public class WaitForStationary extends AutonomousAction {
+    DriveSubsystem driveSubsystem;
+
+    double stationaryTime;
+    double timeout;
+    double startTime;
+
+    /**
+     * Make a new WaitForStationary.
+     * @param subsystems The robot's subsystems
+     * @param stationaryTime How long the robot must have been still, in
+     *                       seconds.
+     * @param timeout The longest time to wait, in seconds. This also stops
+     *                the action from waiting forever if the gyro can't
+     *                detect motion.
+     */
+    public WaitForStationary(Subsystems subsystems, double stationaryTime,
+            double timeout) {
+        this.driveSubsystem = subsystems.drive();
+
+        this.stationaryTime = stationaryTime;
+        this.timeout = timeout;
+    }
+
+    @Override
+    protected void startCode() {
+        startTime = Timer.getFPGATimestamp();
+    }
+
+    @Override
+    protected EndState periodicCode() {
+        if (!driveSubsystem.canDetectMotion()
+                || driveSubsystem.getStationaryTime() >= stationaryTime
+                || Timer.getFPGATimestamp() - startTime >= timeout) {
+            return EndState.END;
+        } else {
+            return EndState.CONTINUE;
+        }
+    }
+}